@@ -0,0 +1,82 @@
+package JavaCompiler;
+
+import java.util.Arrays;
+
+/*
+ * Gathers the items a stage hands on into batches for the queue to the next stage, so the
+ * queue, and the wakeup on the other side of it, are paid for once a batch rather than once an
+ * item. A batch goes out when it reaches its target size, when its first item has waited out
+ * the linger time, or when the stage runs out of input with at least min items gathered, so
+ * at low load an item still goes out about as soon as it is made. The target adapts to the
+ * load: it doubles, up to max, every time a batch fills up, and halves, down to min, every
+ * time one goes out short.
+ */
+class Batcher {
+
+    private final StageQueue out;
+    private final int min;
+    private final int max;
+    private final long linger;
+    private int target;
+    private Object[][] batch;
+    private int size;
+    private long started;
+
+    // out may be null for the last stage of a pipe, which hands nothing on
+    Batcher(StageQueue out, int min, int max, long linger){
+        if(min < 1 || max < min){
+            throw new IllegalArgumentException("Batches need 1 <= min <= max, not " + min + " and " + max);
+        }
+        this.out = out;
+        this.min = min;
+        this.max = max;
+        this.linger = linger;
+        target = min;
+    }
+
+    void add(Object[] item){
+        if(out == null){
+            return;
+        }
+        if(size == 0){
+            batch = new Object[target][];
+            started = System.nanoTime();
+        }
+        batch[size++] = item;
+        if(size == target){
+            out.put(batch);
+            size = 0;
+            target = Math.min(max, target << 1);
+        } else if(lingered()){
+            // Every item looks at the clock: a stage can slow down at any item, and skipping some would hold the first item back for all of them
+            flush();
+        }
+    }
+
+    // Sends whatever has been gathered, however short of the target
+    void flush(){
+        if(size == 0){
+            return;
+        }
+        out.put(Arrays.copyOf(batch, size));
+        size = 0;
+        target = Math.max(min, target >> 1);
+    }
+
+    // The stage has nothing more to take for now, so only hold on to less than min items
+    void idle(){
+        if(size >= min || lingered()){
+            flush();
+        }
+    }
+
+    // How long the stage may wait for more input before the batch has to go out, or -1 for as long as it takes
+    long patience(){
+        return size == 0 ? -1 : Math.max(0, started + linger - System.nanoTime());
+    }
+
+    private boolean lingered(){
+        return System.nanoTime() - started >= linger;
+    }
+
+}
@@ -0,0 +1,597 @@
+package JavaCompiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import JavaCompiler.Core.*;
+
+public class Benchmark {
+
+    static String definitionsBlock(int functions){
+        StringBuilder program = new StringBuilder("Definitions {\n");
+        for(int i = 0; i < functions; i++){
+            program.append("    INT FUNC f").append(i).append(" ( INT x, RAT y ) {\n");
+            program.append("        INT a").append(i).append(" <== x * 2 + 7 - (3 ^ 2) % 4\n");
+            program.append("        if(a").append(i).append(" >= 10 and y != 1.5e3){\n");
+            program.append("            return a").append(i).append(" + x\n");
+            program.append("        }\n");
+            program.append("        :: keep the comment stripper honest ::\n");
+            program.append("        return x\n");
+            program.append("    }\n");
+            program.append("    ||INT|| l").append(i).append(" <== #INT#|| 1, 2, 3, 4, 5, 6, 7, 8 ||\n");
+        }
+        program.append("}\n");
+        return program.toString();
+    }
+
+    static String pipelinesBlock(int pipes){
+        StringBuilder program = new StringBuilder("Pipelines {\n");
+        for(int i = 0; i < pipes; i++){
+            program.append("    l").append(i).append(", \"pipe\"");
+            for(int stage = 0; stage < 20; stage++){
+                program.append(" --> f").append(stage).append(" -(INT)-> g -h-i-> h");
+            }
+            program.append(" --> print\n");
+        }
+        program.append("}\n");
+        return program.toString();
+    }
+
+    static String expressionsBlock(int lines){
+        StringBuilder program = new StringBuilder("Definitions {\n");
+        for(int i = 0; i < lines; i++){
+            program.append("    INT e").append(i).append(" <== 1 + a * (b - 3) / 4 % 5 ^ 2 - -c + d[i] * f(x, y + 1) - 7 * 8 + 9\n");
+            program.append("    BOOL b").append(i).append(" <== x < 3 and y >= 4 or !z and a + b * c == d - e / f or g != h\n");
+        }
+        program.append("}\n");
+        return program.toString();
+    }
+
+    static String program(int size){
+        return definitionsBlock(size) + pipelinesBlock(size / 4);
+    }
+
+    static void lexer(){
+        for(int warmup = 0; warmup < 5; warmup++){
+            new Lexer(program(2000)).tokenize();
+        }
+        System.out.println("Lexer throughput");
+        for(int size = 1000; size <= 64000; size *= 2){
+            String program = program(size);
+            long start = System.nanoTime();
+            int tokens = new Lexer(program).tokenize().size();
+            long elapsed = System.nanoTime() - start;
+            double megabytes = program.length() / (1024.0 * 1024.0);
+            System.out.printf("  %8.2f MB  %9d tokens  %8.2f ms  %8.2f MB/s%n", megabytes, tokens, elapsed / 1e6, megabytes / (elapsed / 1e9));
+        }
+    }
+
+    static void mappedLexer() throws IOException {
+        System.out.println("Mapped file lexer throughput");
+        Path file = Files.createTempFile("benchmark", ".plumb");
+        try {
+            Files.writeString(file, program(2000));
+            for(int warmup = 0; warmup < 5; warmup++){
+                new Lexer(file).tokenize();
+            }
+            for(int size = 1000; size <= 64000; size *= 4){
+                Files.writeString(file, program(size));
+                long start = System.nanoTime();
+                int tokens = new Lexer(file).tokenize().size();
+                long elapsed = System.nanoTime() - start;
+                double megabytes = Files.size(file) / (1024.0 * 1024.0);
+                System.out.printf("  %8.2f MB  %9d tokens  %8.2f ms  %8.2f MB/s%n", megabytes, tokens, elapsed / 1e6, megabytes / (elapsed / 1e9));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    static void parallelLexer(){
+        System.out.println("Parallel lexer throughput on " + ForkJoinPool.commonPool().getParallelism() + " workers");
+        for(int warmup = 0; warmup < 5; warmup++){
+            ParallelLexer.tokenize(program(2000));
+        }
+        for(int size = 4000; size <= 64000; size *= 4){
+            String program = program(size);
+            long start = System.nanoTime();
+            int tokens = ParallelLexer.tokenize(program).size();
+            long elapsed = System.nanoTime() - start;
+            double megabytes = program.length() / (1024.0 * 1024.0);
+            System.out.printf("  %8.2f MB  %9d tokens  %8.2f ms  %8.2f MB/s%n", megabytes, tokens, elapsed / 1e6, megabytes / (elapsed / 1e9));
+        }
+    }
+
+    // Time per token should stay flat as the program doubles if lookahead never copies
+    static void parser() throws Parser.UnexpectedMatchException {
+        for(int warmup = 0; warmup < 5; warmup++){
+            new Parser(new Lexer(definitionsBlock(2000)));
+        }
+        System.out.println("Parser scaling");
+        for(int size = 1000; size <= 64000; size *= 2){
+            String program = definitionsBlock(size);
+            TokenTable tokens = new Lexer(program).tokenize();
+            long start = System.nanoTime();
+            new Parser(tokens);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("  %9d tokens  %8.2f ms  %8.2f ns/token%n", tokens.size(), elapsed / 1e6, (double) elapsed / tokens.size());
+        }
+    }
+
+    static void expressionParser() throws Parser.UnexpectedMatchException {
+        for(int warmup = 0; warmup < 5; warmup++){
+            new Parser(new Lexer(expressionsBlock(20000)).tokenize());
+        }
+        System.out.println("Expression parser throughput");
+        for(int size = 10000; size <= 160000; size *= 4){
+            TokenTable tokens = new Lexer(expressionsBlock(size)).tokenize();
+            long start = System.nanoTime();
+            new Parser(tokens);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("  %9d tokens  %8.2f ms  %8.2f ns/token%n", tokens.size(), elapsed / 1e6, (double) elapsed / tokens.size());
+        }
+    }
+
+    static void parallelParser() throws Parser.UnexpectedMatchException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("Parallel parser on " + pool.getParallelism() + " workers");
+        for(int warmup = 0; warmup < 5; warmup++){
+            new Parser(new Lexer(definitionsBlock(4000)).tokenize(), pool);
+        }
+        for(int size = 4000; size <= 64000; size *= 4){
+            TokenTable tokens = new Lexer(definitionsBlock(size)).tokenize();
+            long start = System.nanoTime();
+            new Parser(tokens);
+            long sequential = System.nanoTime() - start;
+            start = System.nanoTime();
+            new Parser(tokens, pool);
+            long parallel = System.nanoTime() - start;
+            System.out.printf("  %9d tokens  sequential %8.2f ms  parallel %8.2f ms  %5.2fx%n", tokens.size(), sequential / 1e6, parallel / 1e6, (double) sequential / parallel);
+        }
+    }
+
+    // Edits in the middle of ever larger sources, with and without asking for a line after each
+    static void incrementalLexer(){
+        System.out.println("Incremental relex after a single edit");
+        for(int size = 1000; size <= 64000; size *= 4){
+            String program = definitionsBlock(size);
+            TokenTable tokens = new Lexer(program).tokenize();
+            int at = program.indexOf("return x\n", program.length() / 2);
+            int last = tokens.size() - 1;
+            tokens.line(last);
+            int edits = 2000;
+            long edit = 0;
+            long lookup = 0;
+            for(int i = 0; i < edits * 2; i++){
+                // Adds a line and takes it away again, so every line after it moves
+                boolean add = i % 2 == 0;
+                long start = System.nanoTime();
+                IncrementalLexer.edit(tokens, at, add ? 0 : 9, add ? "return y\n" : "");
+                long edited = System.nanoTime();
+                tokens.line(last);
+                if(i >= edits){
+                    edit += edited - start;
+                    lookup += System.nanoTime() - start;
+                }
+            }
+            System.out.printf("  %6.1f MB %9d tokens  edit %8.2f us  edit and line %8.2f us%n",
+                program.length() / 1048576.0, tokens.size(), edit / 1e3 / edits, lookup / 1e3 / edits);
+        }
+    }
+
+    // Relexes and reparses after flipping one return statement in the middle of the block back and forth
+    static void incrementalParser() throws Parser.UnexpectedMatchException {
+        System.out.println("Incremental reparse after a single function edit");
+        for(int size = 1000; size <= 16000; size *= 4){
+            StringBuilder program = new StringBuilder(definitionsBlock(size));
+            TokenTable tokens = new Lexer(program).tokenize();
+            IncrementalParser parser = new IncrementalParser();
+            parser.parse(tokens);
+            int at = program.indexOf("return x\n", program.length() / 2);
+            long total = 0;
+            int edits = 400;
+            for(int edit = 0; edit < edits * 2; edit++){
+                program.replace(at, at + 8, edit % 2 == 0 ? "return y" : "return x");
+                long start = System.nanoTime();
+                IncrementalLexer.edit(tokens, program, at, 8, 8);
+                parser.parse(tokens);
+                if(edit >= edits){
+                    total += System.nanoTime() - start;
+                }
+            }
+            long start = System.nanoTime();
+            new Parser(new Lexer(program).tokenize());
+            long full = System.nanoTime() - start;
+            System.out.printf("  %9d tokens  incremental %8.3f ms  full %8.2f ms%n", tokens.size(), total / 1e6 / edits, full / 1e6);
+        }
+    }
+
+    // Time per character should stay flat as the output doubles if nothing is copied twice
+    static void generator() throws IOException, Parser.UnexpectedMatchException {
+        for(int warmup = 0; warmup < 5; warmup++){
+            new Generator(new Parser(new Lexer(definitionsBlock(2000))).root);
+        }
+        System.out.println("Generator scaling");
+        Path file = Files.createTempFile("benchmark", ".java");
+        try {
+            for(int size = 1000; size <= 64000; size *= 4){
+                Program program = new Parser(new Lexer(definitionsBlock(size))).root;
+                long start = System.nanoTime();
+                int length = new Generator(program).toString().length();
+                long buffered = System.nanoTime() - start;
+                start = System.nanoTime();
+                Generator.write(program, file);
+                long written = System.nanoTime() - start;
+                System.out.printf("  %8.2f MB out  buffer %8.2f ms  %6.2f ns/char  file %8.2f ms%n", length / (1024.0 * 1024.0), buffered / 1e6, (double) buffered / length, written / 1e6);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Every node of the expression trees under the block's declarations, in source order
+    private static void collect(Node node, ArrayList<Node> into){
+        into.add(node);
+        if(node instanceof VariableDec v){
+            collect(v.expression(), into);
+        } else if(node instanceof BinaryExpression b){
+            collect(b.left(), into);
+            collect(b.right(), into);
+        } else if(node instanceof UnaryExpression u){
+            collect(u.right(), into);
+        } else if(node instanceof IndexExpression i){
+            collect(i.object(), into);
+            collect(i.index(), into);
+        } else if(node instanceof CallExpression c){
+            collect(c.function(), into);
+            c.arguments().forEach(argument -> collect(argument, into));
+        }
+    }
+
+    // The lookup Generator.distribute used to do, kept to compare against
+    private static FlatTree.Kind bySimpleName(Node node){
+        return switch(node.getClass().getSimpleName()){
+            case "VariableDec" -> FlatTree.Kind.VARIABLE;
+            case "BinaryExpression" -> FlatTree.Kind.BINARY;
+            case "UnaryExpression" -> FlatTree.Kind.UNARY;
+            case "IndexExpression" -> FlatTree.Kind.INDEX;
+            case "CallExpression" -> FlatTree.Kind.CALL;
+            case "IdentifierLiteral" -> FlatTree.Kind.IDENTIFIER;
+            case "IntegerLiteral" -> FlatTree.Kind.INTEGER;
+            default -> throw new IllegalArgumentException("Unsupported object type: " + node.getClass().getName());
+        };
+    }
+
+    // Dispatch on the class name against a visitor over the sealed node types, on the same nodes
+    static void dispatch() throws Parser.UnexpectedMatchException {
+        Program program = new Parser(new Lexer(expressionsBlock(40000)).tokenize()).root;
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        program.definition().get().statements().get().forEach(statement -> collect(statement, nodes));
+        System.out.println("Dispatch over " + nodes.size() + " nodes");
+        long byName = 0;
+        long byVisitor = 0;
+        int checksum = 0;
+        for(int round = 0; round < 30; round++){
+            long start = System.nanoTime();
+            for(Node node : nodes){
+                checksum += bySimpleName(node).ordinal();
+            }
+            long middle = System.nanoTime();
+            for(Node node : nodes){
+                checksum -= FlatTree.kindOf(node).ordinal();
+            }
+            long end = System.nanoTime();
+            if(round >= 25){
+                byName += middle - start;
+                byVisitor += end - middle;
+            }
+        }
+        if(checksum != 0){
+            throw new IllegalStateException("Dispatches disagree");
+        }
+        System.out.printf("  class name %6.2f ns/node  visitor %6.2f ns/node%n", byName / 5.0 / nodes.size(), byVisitor / 5.0 / nodes.size());
+    }
+
+    private static long usedHeap(){
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Source to running class through the bytecode backend, with no Java source or javac in between
+    static void bytecode() throws Parser.UnexpectedMatchException {
+        for(int warmup = 0; warmup < 5; warmup++){
+            BytecodeGenerator.run(BytecodeGenerator.compile(new Parser(new Lexer(definitionsBlock(2000))).root), new String[0]);
+        }
+        System.out.println("Bytecode backend latency");
+        // Past 16000 functions Start runs out of constant pool
+        for(int size = 1000; size <= 16000; size *= 4){
+            Program program = new Parser(new Lexer(definitionsBlock(size))).root;
+            long start = System.nanoTime();
+            Map<String, byte[]> classes = BytecodeGenerator.compile(program);
+            long compiled = System.nanoTime() - start;
+            int bytes = classes.values().stream().mapToInt(b -> b.length).sum();
+            start = System.nanoTime();
+            BytecodeGenerator.run(classes, new String[0]);
+            long ran = System.nanoTime() - start;
+            System.out.printf("  %6d functions  %8.2f KB of classes  compile %8.2f ms  load and run %8.2f ms%n", size, bytes / 1024.0, compiled / 1e6, ran / 1e6);
+        }
+    }
+
+    // Many small scripts through javac in process, then the same scripts again from the cache
+    static void sourceRunner() throws Parser.UnexpectedMatchException {
+        ArrayList<String> scripts = new ArrayList<String>();
+        for(int i = 0; i < 20; i++){
+            scripts.add(new Generator(new Parser(new Lexer("Definitions {\n    INT a <== " + i + " * 2 + 7\n    STR s <== \"script\"\n}\nPipelines {}\n")).root).toString());
+        }
+        System.out.println("In memory source runs");
+        for(String pass : List.of("javac", "cached")){
+            long start = System.nanoTime();
+            for(String script : scripts){
+                SourceRunner.run(script, new String[0]);
+            }
+            System.out.printf("  %-6s  %8.2f ms per script%n", pass, (System.nanoTime() - start) / 1e6 / scripts.size());
+        }
+    }
+
+    // Pipes that block, as pipes doing I/O do, run side by side rather than one after another
+    static void pipes(){
+        System.out.println("Concurrent blocking pipes");
+        for(int count = 1; count <= 1024; count *= 4){
+            Runnable[] pipes = new Runnable[count];
+            for(int i = 0; i < count; i++){
+                pipes[i] = () -> {
+                    try {
+                        Thread.sleep(20);
+                    } catch(InterruptedException e){
+                        Thread.currentThread().interrupt();
+                    }
+                };
+            }
+            long start = System.nanoTime();
+            Scheduler.start(new String[0]).run(pipes);
+            System.out.printf("  %5d pipes of 20 ms  %8.2f ms%n", count, (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    // A factory over a million instances, which only ever holds a window of them in flight
+    static void factory(){
+        ArrayList<Object> instances = new ArrayList<Object>();
+        for(int i = 0; i < 1_000_000; i++){
+            instances.add(i);
+        }
+        long[] sum = {0};
+        Function<Object[], Object[]> body = values -> {
+            double x = (Integer) values[0];
+            for(int i = 0; i < 200; i++){
+                x = Math.sqrt(x + i);
+            }
+            return new Object[]{x};
+        };
+        Function<Object[], Object[]> merge = values -> {
+            sum[0] += ((Double) values[0]).longValue();
+            return values;
+        };
+        System.out.println("Factory fan out");
+        for(int round = 0; round < 3; round++){
+            long start = System.nanoTime();
+            for(Object instance : instances){
+                merge.apply(body.apply(new Object[]{instance}));
+            }
+            long sequential = System.nanoTime() - start;
+            start = System.nanoTime();
+            Pipes.stream(new Object[]{instances}, Pipes.factory(), Pipes.parallel(body), Pipes.map(merge));
+            long parallel = System.nanoTime() - start;
+            System.out.printf("  %d instances on %d workers  sequential %8.2f ms  parallel stage %8.2f ms%n",
+                instances.size(), Scheduler.parallelism(), sequential / 1e6, parallel / 1e6);
+        }
+    }
+
+    // Cheap stages, each on a thread of its own with a queue in between
+    static void stream(){
+        ArrayList<Object> instances = new ArrayList<Object>();
+        for(int i = 0; i < 1_000_000; i++){
+            instances.add(i);
+        }
+        Function<Object[], Object[]> increment = values -> new Object[]{(Integer) values[0] + 1};
+        System.out.println("Streaming stages");
+        for(int stages = 1; stages <= 8; stages *= 2){
+            Pipes.Stage[] pipe = new Pipes.Stage[stages + 1];
+            pipe[0] = Pipes.factory();
+            for(int i = 1; i <= stages; i++){
+                pipe[i] = Pipes.map(increment);
+            }
+            long before = usedHeap();
+            long start = System.nanoTime();
+            Pipes.stream(new Object[]{instances}, pipe);
+            long elapsed = System.nanoTime() - start;
+            Function<Object[], Object[]> fused = increment;
+            for(int i = 1; i < stages; i++){
+                fused = fused.andThen(increment);
+            }
+            start = System.nanoTime();
+            Pipes.stream(new Object[]{instances}, Pipes.factory(), Pipes.map(fused));
+            long fusedElapsed = System.nanoTime() - start;
+            System.out.printf("  %d stages  %8.2f ms  %6.1f ns per item per stage  heap %+6.1f MB  fused %8.2f ms  %6.1f ns per item per stage%n",
+                stages, elapsed / 1e6, (double) elapsed / instances.size() / stages, (usedHeap() - before) / 1048576.0,
+                fusedElapsed / 1e6, (double) fusedElapsed / instances.size() / stages);
+        }
+    }
+
+    // A pipe over 8 instances of about a millisecond next to one fanning out over many: on one lane, a lane each, and weighted up
+    static void scheduler() throws InterruptedException {
+        Function<Object[], Object[]> body = values -> {
+            double x = (Integer) values[0];
+            for(int i = 0; i < 125_000; i++){
+                x = Math.sqrt(x + i);
+            }
+            return new Object[]{x};
+        };
+        ArrayList<Object> many = new ArrayList<Object>();
+        for(int i = 0; i < 1_000; i++){
+            many.add(i);
+        }
+        List<Object> few = new ArrayList<Object>(many.subList(0, 8));
+        long[] light = new long[1];
+        Runnable hot = () -> Pipes.stream(new Object[]{many}, Pipes.factory(), Pipes.parallel(body));
+        Runnable small = () -> {
+            long start = System.nanoTime();
+            Pipes.stream(new Object[]{few}, Pipes.factory(), Pipes.parallel(body));
+            light[0] = System.nanoTime() - start;
+        };
+        System.out.println("Scheduling a small pipe next to a hot one");
+        small.run();
+        small.run();
+        System.out.printf("  alone            small pipe %8.2f ms%n", light[0] / 1e6);
+        for(int round = 0; round < 2; round++){
+            // Outside of Scheduler.run both pipes share one lane, which is first come first served
+            Thread other = new Thread(hot);
+            other.start();
+            Thread.sleep(20);
+            small.run();
+            other.join();
+            System.out.printf("  one lane         small pipe %8.2f ms%n", light[0] / 1e6);
+            for(String flags : List.of("--priority=2:1", "--priority=2:8")){
+                Scheduler.start(new String[]{flags}).run(hot, () -> {
+                    try {
+                        Thread.sleep(20);
+                    } catch(InterruptedException e){
+                        Thread.currentThread().interrupt();
+                    }
+                    small.run();
+                });
+                System.out.printf("  %-16s small pipe %8.2f ms%n", flags, light[0] / 1e6);
+            }
+        }
+    }
+
+    /*
+     * One queue between two threads, with items going over flat out, trickling in, and coming
+     * out of a slow stage whose input is backlogged so it never runs dry, for a few batch sizes
+     */
+    static void batching() throws InterruptedException {
+        System.out.println("Batching between stages");
+        for(int max = 1; max <= 256; max *= 16){
+            long[] trickle = handOver(2_000, max, 100_000, false);
+            long[] slow = handOver(50, max, 2_000_000, true);
+            long[] flat = handOver(1_000_000, max, 0, false);
+            System.out.printf("  max batch %3d  flat out %6.1f ns per item  trickling in %8.1f us from add to take  backlogged at 2 ms an item %6.2f ms%n",
+                max, (double) flat[0] / 1_000_000, trickle[1] / 1e3, slow[1] / 1e6);
+        }
+    }
+
+    // Hands count items through a Batcher to another thread, one every gap ns; the time it took, and how long an item waited on average
+    private static long[] handOver(int count, int max, long gap, boolean backlogged) throws InterruptedException {
+        StageQueue queue = new StageQueue(Pipes.QUEUE_CAPACITY);
+        Batcher batcher = new Batcher(queue, 1, max, Pipes.LINGER_NANOS);
+        long[] waited = new long[1];
+        Thread consumer = new Thread(() -> {
+            for(Object[][] batch = queue.take(); batch != null; batch = queue.take()){
+                long now = System.nanoTime();
+                for(Object[] item : batch){
+                    waited[0] += now - (Long) item[0];
+                }
+            }
+        });
+        consumer.start();
+        long start = System.nanoTime();
+        Object[] item = {start};
+        for(int i = 0; i < count; i++){
+            if(gap > 0){
+                LockSupport.parkNanos(gap);
+                batcher.add(new Object[]{System.nanoTime()});
+                if(!backlogged){
+                    // What a stage does when nothing more has come in
+                    batcher.idle();
+                }
+            } else {
+                batcher.add(item);
+            }
+        }
+        batcher.flush();
+        queue.close();
+        consumer.join();
+        return new long[]{System.nanoTime() - start, waited[0] / count};
+    }
+
+    // Heap held by the record tree against the flat tree, and how fast the flat tree walks
+    static void flatTree() throws Parser.UnexpectedMatchException {
+        System.out.println("Flat tree against the record tree");
+        for(int size = 10000; size <= 40000; size *= 2){
+            flatTree(size);
+        }
+    }
+
+    // One size per call, so nothing from the size before is still on the stack when the heap is measured
+    private static void flatTree(int size) throws Parser.UnexpectedMatchException {
+        TokenTable tokens = new Lexer(expressionsBlock(size)).tokenize();
+        // The first parse fills the table's lexeme cache, which would otherwise count as tree
+        new Parser(tokens);
+        long before = usedHeap();
+        Program program = new Parser(tokens).root;
+        long records = usedHeap() - before;
+        long start = System.nanoTime();
+        FlatTree tree = FlatTree.of(program);
+        long converted = System.nanoTime() - start;
+        program = null;
+        long flat = usedHeap() - before;
+        int[] identifiers = {0};
+        FlatTree.Visitor counter = new FlatTree.Visitor(){
+            @Override
+            public boolean enter(FlatTree walked, int node){
+                if(walked.kind(node) == FlatTree.Kind.IDENTIFIER){
+                    identifiers[0]++;
+                }
+                return true;
+            }
+        };
+        for(int warmup = 0; warmup < 5; warmup++){
+            tree.walk(counter);
+        }
+        start = System.nanoTime();
+        tree.walk(counter);
+        long walked = System.nanoTime() - start;
+        start = System.nanoTime();
+        int scanned = 0;
+        for(int node = 0; node < tree.size(); node++){
+            if(tree.kind(node) == FlatTree.Kind.IDENTIFIER){
+                scanned++;
+            }
+        }
+        long scan = System.nanoTime() - start;
+        // Reading the tokens last keeps them alive through every measurement above
+        System.out.printf("  %9d tokens  %9d nodes  records %6.1f MB  flat %6.1f MB  convert %7.2f ms  walk %6.2f ms  scan %6.2f ms  %d identifiers%n",
+            tokens.size(), tree.size(), records / 1048576.0, flat / 1048576.0, converted / 1e6, walked / 1e6, scan / 1e6, scanned);
+    }
+
+    public static void main(String[] args) throws IOException, Parser.UnexpectedMatchException, InterruptedException {
+        lexer();
+        mappedLexer();
+        parallelLexer();
+        parser();
+        expressionParser();
+        parallelParser();
+        incrementalLexer();
+        incrementalParser();
+        generator();
+        dispatch();
+        flatTree();
+        bytecode();
+        sourceRunner();
+        pipes();
+        factory();
+        stream();
+        batching();
+        scheduler();
+    }
+
+}
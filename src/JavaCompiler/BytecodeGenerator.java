@@ -0,0 +1,957 @@
+package JavaCompiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import JavaCompiler.ClassWriter.Code;
+import JavaCompiler.ClassWriter.Label;
+import JavaCompiler.Core.*;
+import JavaCompiler.Parser.UnexpectedMatchException;
+
+import static JavaCompiler.ClassWriter.*;
+
+/*
+ * The second backend: turns a Program straight into class files, with no Java source and no
+ * javac in between. Start gets every top level declaration of the Definitions block as a
+ * static field and every FUNC as a static method, runs the rest of the block when it is
+ * initialized, and runs the pipes in main. Every PROTO becomes a class of its own. Values are
+ * objects throughout and operators are calls into PlumbRuntime, so nothing in the generated
+ * code is typed beyond Object.
+ */
+class BytecodeGenerator implements Visitor<Void> {
+
+    static final String START = "Start";
+
+    private static final String RUNTIME = "JavaCompiler/PlumbRuntime";
+    private static final String OBJECT_CLASS = "java/lang/Object";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String BINARY = "(" + OBJECT + OBJECT + ")" + OBJECT;
+    private static final String UNARY = "(" + OBJECT + ")" + OBJECT;
+    private static final String ARRAY = "([" + OBJECT + ")" + OBJECT;
+
+    // Top level statements go into initializer methods of about this much code each, as no method may pass 64 KB
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private static final HashMap<String, String> operators = new HashMap<String, String>();
+    static {
+        operators.put("+", "add");
+        operators.put("-", "subtract");
+        operators.put("*", "multiply");
+        operators.put("/", "divide");
+        operators.put("%", "modulo");
+        operators.put("^", "power");
+        operators.put("<", "less");
+        operators.put("<=", "lessEqual");
+        operators.put(">", "greater");
+        operators.put(">=", "greaterEqual");
+        operators.put("==", "equal");
+        operators.put("!=", "notEqual");
+        operators.put("<++", "add");
+        operators.put("<--", "subtract");
+        operators.put("<**", "multiply");
+        operators.put("<//", "divide");
+        operators.put("<%%", "modulo");
+    }
+
+    private final LinkedHashMap<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+    private final HashMap<String, Integer> functions = new HashMap<String, Integer>();
+    private final HashMap<String, PrototypeDec> prototypes = new HashMap<String, PrototypeDec>();
+    private final HashMap<String, Boolean> globals = new HashMap<String, Boolean>();
+
+    /*
+     * The method being written: its code, the slot of every local by name, and for methods of
+     * a PROTO the attributes and methods of its class. loops holds the continue and break
+     * targets of the loops around the current statement.
+     */
+    private class Frame {
+        final ClassWriter owner;
+        final Code code;
+        final PrototypeDec prototype;
+        final boolean constructor;
+        // main and the static initializer of Start, which return nothing and have no FUNC to return from
+        final boolean initializer;
+        HashMap<String, Integer> locals = new HashMap<String, Integer>();
+        int nextLocal;
+        final ArrayDeque<Label[]> loops = new ArrayDeque<Label[]>();
+
+        Frame(ClassWriter owner, int access, String name, String descriptor, int parameterSlots, PrototypeDec prototype, boolean constructor, boolean initializer){
+            this.owner = owner;
+            this.code = owner.method(access, name, descriptor, parameterSlots);
+            this.prototype = prototype;
+            this.constructor = constructor;
+            this.initializer = initializer;
+            this.nextLocal = parameterSlots;
+        }
+
+        int local(String name){
+            int slot = nextLocal++;
+            locals.put(name, slot);
+            return slot;
+        }
+
+        int temporary(){
+            return nextLocal++;
+        }
+    }
+
+    private Frame frame;
+
+    static Map<String, byte[]> compile(Program program){
+        BytecodeGenerator generator = new BytecodeGenerator();
+        program.accept(generator);
+        return generator.classes;
+    }
+
+    // Defines the compiled classes in a loader of their own and hands back Start
+    static Class<?> load(Map<String, byte[]> classes){
+        return new MemoryClassLoader(classes).load(START);
+    }
+
+    static void run(Map<String, byte[]> classes, String[] args){
+        new MemoryClassLoader(classes).run(START, args);
+    }
+
+    private static String descriptor(int arguments, String returns){
+        return "(" + OBJECT.repeat(arguments) + ")" + returns;
+    }
+
+    private static IllegalArgumentException unsupported(String what){
+        return new IllegalArgumentException(what + " is not supported by the bytecode backend");
+    }
+
+    /* Declaration Section */
+
+    @Override
+    public Void visit(Program p) {
+        p.imports().ifPresent(imports -> imports.forEach(i -> distribute(i)));
+        List<Statement> statements = p.definition().flatMap(DefinitionsDec::statements).orElse(new ArrayList<Statement>());
+        for(Statement statement : statements){
+            if(statement instanceof FunctionDec f){
+                functions.put(f.identifier(), f.parameters().size());
+            } else if(statement instanceof PrototypeDec proto){
+                prototypes.put(proto.identifier(), proto);
+            } else if(statement instanceof VariableDec v){
+                globals.put(v.identifier(), true);
+            }
+        }
+
+        ClassWriter start = new ClassWriter(START, OBJECT_CLASS);
+        for(String global : globals.keySet()){
+            start.field(PUBLIC | STATIC, global, OBJECT);
+        }
+        for(Statement statement : statements){
+            if(statement instanceof FunctionDec f){
+                function(start, f);
+            }
+        }
+        initializer(start, statements);
+
+        frame = new Frame(start, PUBLIC | STATIC, "main", "([Ljava/lang/String;)V", 1, null, false, true);
+        frame.code.load(0);
+        frame.code.invoke(INVOKESTATIC, RUNTIME, "input", "([Ljava/lang/String;)" + OBJECT);
+        frame.code.store(frame.local("INPUT"));
+        p.pipeline().ifPresent(pipelines -> distribute(pipelines));
+        frame.code.op(RETURN, 0);
+        frame.code.finish();
+        classes.put(START, start.toBytes());
+
+        for(PrototypeDec proto : prototypes.values()){
+            prototype(proto);
+        }
+        return null;
+    }
+
+    // Every statement of the block that is not a FUNC or PROTO, in order, split over as many methods as it takes
+    private void initializer(ClassWriter start, List<Statement> statements){
+        int chunks = 0;
+        frame = null;
+        for(Statement statement : statements){
+            if(statement instanceof FunctionDec || statement instanceof PrototypeDec){
+                continue;
+            }
+            if(frame == null || frame.code.size() > CHUNK_SIZE){
+                if(frame != null){
+                    frame.code.op(RETURN, 0);
+                    frame.code.finish();
+                }
+                frame = new Frame(start, STATIC, "definitions$" + chunks++, "()V", 0, null, false, true);
+            }
+            if(statement instanceof VariableDec v){
+                value(v.type(), v.expression());
+                frame.code.field(PUTSTATIC, START, v.identifier(), OBJECT);
+            } else {
+                distribute(statement);
+            }
+        }
+        if(frame != null){
+            frame.code.op(RETURN, 0);
+            frame.code.finish();
+        }
+        frame = new Frame(start, STATIC, "<clinit>", "()V", 0, null, false, true);
+        for(int chunk = 0; chunk < chunks; chunk++){
+            frame.code.invoke(INVOKESTATIC, START, "definitions$" + chunk, "()V");
+        }
+        frame.code.op(RETURN, 0);
+        frame.code.finish();
+    }
+
+    private void function(ClassWriter start, FunctionDec f){
+        frame = new Frame(start, PUBLIC | STATIC, f.identifier(), descriptor(f.parameters().size(), OBJECT), f.parameters().size(), null, false, false);
+        for(int i = 0; i < f.parameters().size(); i++){
+            frame.locals.put(f.parameters().get(i).identifier(), i);
+        }
+        body(f.statements());
+    }
+
+    private void body(List<Statement> statements){
+        statements.forEach(s -> distribute(s));
+        if(frame.constructor){
+            frame.code.op(RETURN, 0);
+        } else {
+            frame.code.pushNull();
+            frame.code.op(ARETURN, -1);
+        }
+        frame.code.finish();
+    }
+
+    /*
+     * A PROTO is a class with a public field per attribute, a constructor per constructor
+     * declaration, or a default one when it has none, and a method per method. Attributes
+     * with a value get it at the start of every constructor.
+     */
+    private void prototype(PrototypeDec p){
+        ClassWriter writer = new ClassWriter(p.identifier(), OBJECT_CLASS);
+        ArrayList<AttributeDec> attributes = new ArrayList<AttributeDec>();
+        ArrayList<ConstructorDec> constructors = new ArrayList<ConstructorDec>();
+        for(Statement statement : p.statements()){
+            if(statement instanceof AttributeDec a){
+                attributes.add(a);
+                writer.field(PUBLIC, a.identifier(), OBJECT);
+            } else if(statement instanceof ConstructorDec c){
+                constructors.add(c);
+            } else if(!(statement instanceof MethodDec) && !(statement instanceof FunctionDec)){
+                throw unsupported(statement.getClass().getSimpleName() + " in a PROTO");
+            }
+        }
+        if(constructors.isEmpty()){
+            constructors.add(new ConstructorDec(p.type(), new ArrayList<ParameterDec>(), new ArrayList<Statement>()));
+        }
+        for(ConstructorDec c : constructors){
+            frame = new Frame(writer, PUBLIC, "<init>", descriptor(c.parameters().size(), "V"), c.parameters().size() + 1, p, true, false);
+            parameters(c.parameters());
+            frame.code.load(0);
+            frame.code.invoke(INVOKESPECIAL, OBJECT_CLASS, "<init>", "()V");
+            for(AttributeDec a : attributes){
+                if(a.expression().isPresent()){
+                    frame.code.load(0);
+                    value(a.type(), a.expression().get());
+                    frame.code.field(PUTFIELD, p.identifier(), a.identifier(), OBJECT);
+                }
+            }
+            body(c.statements());
+        }
+        for(Statement statement : p.statements()){
+            if(statement instanceof MethodDec m){
+                method(writer, p, m.identifier(), m.parameters(), m.statements());
+            } else if(statement instanceof FunctionDec f){
+                method(writer, p, f.identifier(), f.parameters(), f.statements());
+            }
+        }
+        classes.put(p.identifier(), writer.toBytes());
+    }
+
+    private void method(ClassWriter writer, PrototypeDec p, String name, ArrayList<ParameterDec> parameters, ArrayList<Statement> statements){
+        frame = new Frame(writer, PUBLIC, name, descriptor(parameters.size(), OBJECT), parameters.size() + 1, p, false, false);
+        parameters(parameters);
+        body(statements);
+    }
+
+    // Parameters of an instance method start after this
+    private void parameters(List<ParameterDec> parameters){
+        for(int i = 0; i < parameters.size(); i++){
+            frame.locals.put(parameters.get(i).identifier(), i + 1);
+        }
+    }
+
+    private void distribute(Node node){
+        node.accept(this);
+    }
+
+    @Override
+    public Void visit(ImportDec i) {
+        throw unsupported("import");
+    }
+
+    @Override
+    public Void visit(DefinitionsDec d) {
+        throw unsupported("A nested Definitions block");
+    }
+
+    /* Statement Section */
+
+    // A new local, declared once its value is computed so the value still sees what it shadows
+    @Override
+    public Void visit(VariableDec v) {
+        value(v.type(), v.expression());
+        frame.code.store(frame.local(v.identifier()));
+        return null;
+    }
+
+    // Pushes expression, widened to a RAT when that is what it is declared as
+    private void value(Prototype type, Expression expression){
+        distribute(expression);
+        if(type.equals(BasePrototype.RAT)){
+            frame.code.pushString(BasePrototype.RAT.name());
+            frame.code.invoke(INVOKESTATIC, RUNTIME, "cast", "(" + OBJECT + "Ljava/lang/String;)" + OBJECT);
+        }
+    }
+
+    @Override
+    public Void visit(Assignment a) {
+        String operator = a.assignmentOperator();
+        store(a.identifier(), a.self(), () -> {
+            if(operator.equals("<==")){
+                distribute(a.expression());
+            } else {
+                load(a.identifier(), a.self());
+                distribute(a.expression());
+                frame.code.invoke(INVOKESTATIC, RUNTIME, operators.get(operator), BINARY);
+            }
+        });
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionDec f) {
+        throw unsupported("A FUNC inside a block");
+    }
+
+    @Override
+    public Void visit(ParameterDec p) {
+        throw unsupported("A parameter outside a FUNC");
+    }
+
+    @Override
+    public Void visit(PrototypeDec p) {
+        throw unsupported("A PROTO inside a block");
+    }
+
+    @Override
+    public Void visit(AttributeDec a) {
+        throw unsupported("An ATR outside a PROTO");
+    }
+
+    @Override
+    public Void visit(MethodDec m) {
+        throw unsupported("A method outside a PROTO");
+    }
+
+    @Override
+    public Void visit(ConstructorDec c) {
+        throw unsupported("A constructor outside a PROTO");
+    }
+
+    @Override
+    public Void visit(IfStatement i) {
+        Label end = new Label();
+        condition(i.condition(), end);
+        i.statements().forEach(s -> distribute(s));
+        frame.code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(WhileStatement w) {
+        Label start = new Label();
+        Label end = new Label();
+        frame.code.mark(start);
+        condition(w.condition(), end);
+        loop(w.statements(), start, end);
+        frame.code.jump(GOTO, start);
+        frame.code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(ForStatement f) {
+        Label start = new Label();
+        Label step = new Label();
+        Label end = new Label();
+        distribute(f.assignment());
+        frame.code.mark(start);
+        condition(f.condition(), end);
+        loop(f.statements(), step, end);
+        frame.code.mark(step);
+        distribute(f.iteration());
+        frame.code.jump(GOTO, start);
+        frame.code.mark(end);
+        return null;
+    }
+
+    // Jumps to otherwise when condition is not truthy
+    private void condition(Expression condition, Label otherwise){
+        distribute(condition);
+        frame.code.invoke(INVOKESTATIC, RUNTIME, "truthy", "(" + OBJECT + ")Z");
+        frame.code.jump(IFEQ, otherwise);
+    }
+
+    private void loop(List<Statement> statements, Label next, Label end){
+        frame.loops.push(new Label[]{next, end});
+        statements.forEach(s -> distribute(s));
+        frame.loops.pop();
+    }
+
+    @Override
+    public Void visit(ReturnStatement r) {
+        if(frame.constructor){
+            frame.code.op(RETURN, 0);
+        } else if(frame.initializer){
+            throw unsupported("return outside a FUNC");
+        } else {
+            if(r.expression().isPresent()){
+                distribute(r.expression().get());
+            } else {
+                frame.code.pushNull();
+            }
+            frame.code.op(ARETURN, -1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ContinueStatement c) {
+        frame.code.jump(GOTO, innermostLoop("continue")[0]);
+        return null;
+    }
+
+    @Override
+    public Void visit(BreakStatement b) {
+        frame.code.jump(GOTO, innermostLoop("break")[1]);
+        return null;
+    }
+
+    private Label[] innermostLoop(String statement){
+        if(frame.loops.isEmpty()){
+            throw new IllegalArgumentException(statement + " outside of a loop");
+        }
+        return frame.loops.peek();
+    }
+
+    @Override
+    public Void visit(ExpressionStatement e) {
+        distribute(e.expression());
+        frame.code.op(POP, -1);
+        return null;
+    }
+
+    /* Name Section */
+
+    private boolean isAttribute(String name){
+        return frame.prototype != null && frame.prototype.statements().stream()
+            .anyMatch(s -> s instanceof AttributeDec a && a.identifier().equals(name));
+    }
+
+    // Arity of a method of the current PROTO, -1 when it has none of that name
+    private int methodArity(String name){
+        if(frame.prototype == null){
+            return -1;
+        }
+        for(Statement statement : frame.prototype.statements()){
+            if(statement instanceof MethodDec m && m.identifier().equals(name)){
+                return m.parameters().size();
+            } else if(statement instanceof FunctionDec f && f.identifier().equals(name)){
+                return f.parameters().size();
+            }
+        }
+        return -1;
+    }
+
+    private void load(String name, boolean self){
+        if(!self && frame.locals.containsKey(name)){
+            frame.code.load(frame.locals.get(name));
+        } else if(self || isAttribute(name)){
+            attributeOfSelf(name);
+            frame.code.load(0);
+            frame.code.field(GETFIELD, frame.prototype.identifier(), name, OBJECT);
+        } else if(globals.containsKey(name)){
+            frame.code.field(GETSTATIC, START, name, OBJECT);
+        } else {
+            throw new IllegalArgumentException("Unknown name " + name);
+        }
+    }
+
+    // Stores what value pushes; a field needs its object under the value, so value runs in between
+    private void store(String name, boolean self, Runnable value){
+        if(!self && frame.locals.containsKey(name)){
+            value.run();
+            frame.code.store(frame.locals.get(name));
+        } else if(self || isAttribute(name)){
+            attributeOfSelf(name);
+            frame.code.load(0);
+            value.run();
+            frame.code.field(PUTFIELD, frame.prototype.identifier(), name, OBJECT);
+        } else if(globals.containsKey(name)){
+            value.run();
+            frame.code.field(PUTSTATIC, START, name, OBJECT);
+        } else {
+            throw new IllegalArgumentException("Unknown name " + name);
+        }
+    }
+
+    private void attributeOfSelf(String name){
+        if(frame.prototype == null || frame.owner.name().equals(START)){
+            throw new IllegalArgumentException("self." + name + " outside a PROTO");
+        }
+        if(!isAttribute(name)){
+            throw new IllegalArgumentException(frame.prototype.identifier() + " has no attribute " + name);
+        }
+    }
+
+    /*
+     * Calls the FUNC, PROTO constructor, method of the current PROTO or builtin called name
+     * with arity arguments, each pushed by argument.
+     */
+    private void call(String name, int arity, IntConsumer argument){
+        Code code = frame.code;
+        if(functions.containsKey(name)){
+            checkArity(name, functions.get(name), arity);
+            for(int i = 0; i < arity; i++){
+                argument.accept(i);
+            }
+            code.invoke(INVOKESTATIC, START, name, descriptor(arity, OBJECT));
+        } else if(prototypes.containsKey(name)){
+            if(!constructorArities(prototypes.get(name)).contains(arity)){
+                throw new IllegalArgumentException(name + " has no constructor taking " + arity + " arguments");
+            }
+            code.type(NEW, name);
+            code.op(DUP, 1);
+            for(int i = 0; i < arity; i++){
+                argument.accept(i);
+            }
+            code.invoke(INVOKESPECIAL, name, "<init>", descriptor(arity, "V"));
+        } else if(methodArity(name) >= 0 && !frame.owner.name().equals(START)){
+            checkArity(name, methodArity(name), arity);
+            code.load(0);
+            for(int i = 0; i < arity; i++){
+                argument.accept(i);
+            }
+            code.invoke(INVOKEVIRTUAL, frame.prototype.identifier(), name, descriptor(arity, OBJECT));
+        } else if(name.equals("print")){
+            array(arity, argument);
+            code.invoke(INVOKESTATIC, RUNTIME, "print", ARRAY);
+        } else {
+            throw new IllegalArgumentException("Unknown function " + name);
+        }
+    }
+
+    // How many arguments name takes, -1 for any number
+    private int arity(String name){
+        if(functions.containsKey(name)){
+            return functions.get(name);
+        } else if(prototypes.containsKey(name) && constructorArities(prototypes.get(name)).size() == 1){
+            return constructorArities(prototypes.get(name)).get(0);
+        }
+        return -1;
+    }
+
+    private static List<Integer> constructorArities(PrototypeDec p){
+        List<Integer> arities = p.statements().stream()
+            .filter(s -> s instanceof ConstructorDec)
+            .map(s -> ((ConstructorDec) s).parameters().size())
+            .toList();
+        return arities.isEmpty() ? List.of(0) : arities;
+    }
+
+    private static void checkArity(String name, int expected, int actual){
+        if(expected != actual){
+            throw new IllegalArgumentException(name + " takes " + expected + " arguments, not " + actual);
+        }
+    }
+
+    // An Object[] of size, its i-th element pushed by element
+    private void array(int size, IntConsumer element){
+        Code code = frame.code;
+        code.pushInt(size);
+        code.type(ANEWARRAY, OBJECT_CLASS);
+        for(int i = 0; i < size; i++){
+            code.op(DUP, 1);
+            code.pushInt(i);
+            element.accept(i);
+            code.op(AASTORE, -3);
+        }
+    }
+
+    private void array(List<? extends Expression> items){
+        array(items.size(), i -> distribute(items.get(i)));
+    }
+
+    /* Expression Section */
+
+    @Override
+    public Void visit(RationalLiteral r) {
+        frame.code.pushFloat(r.value());
+        frame.code.invoke(INVOKESTATIC, "java/lang/Float", "valueOf", "(F)Ljava/lang/Float;");
+        return null;
+    }
+
+    @Override
+    public Void visit(IntegerLiteral i) {
+        frame.code.pushInt(i.value());
+        frame.code.invoke(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;");
+        return null;
+    }
+
+    @Override
+    public Void visit(BooleanLiteral b) {
+        frame.code.field(GETSTATIC, "java/lang/Boolean", b.value() ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+        return null;
+    }
+
+    @Override
+    public Void visit(StringLiteral s) {
+        frame.code.pushString(s.value());
+        return null;
+    }
+
+    @Override
+    public Void visit(SelfLiteral s) {
+        if(frame.prototype == null){
+            throw new IllegalArgumentException("self outside a PROTO");
+        }
+        frame.code.load(0);
+        return null;
+    }
+
+    @Override
+    public Void visit(DoesNotExistLiteral d) {
+        frame.code.pushNull();
+        return null;
+    }
+
+    @Override
+    public Void visit(PrototypeLiteral p) {
+        // Capitalised names like INPUT lex as prototypes too
+        if(prototypes.containsKey(p.value())){
+            call(p.value(), 0, i -> {});
+        } else {
+            load(p.value(), false);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(IdentifierLiteral i) {
+        load(i.value(), false);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListLiteral l) {
+        array(l.contents());
+        frame.code.invoke(INVOKESTATIC, RUNTIME, "list", ARRAY);
+        return null;
+    }
+
+    @Override
+    public Void visit(MapLiteral m) {
+        array(m.contents().size() * 2, i -> {
+            KeyValuePair pair = m.contents().get(i / 2);
+            distribute(i % 2 == 0 ? pair.key() : pair.value());
+        });
+        frame.code.invoke(INVOKESTATIC, RUNTIME, "map", ARRAY);
+        return null;
+    }
+
+    @Override
+    public Void visit(KeyValuePair k) {
+        throw unsupported("A key value pair outside a map");
+    }
+
+    @Override
+    public Void visit(BinaryExpression b) {
+        Code code = frame.code;
+        if(b.operator().equals("and") || b.operator().equals("or")){
+            // Short circuits: jumps to decided once the left side settles the answer
+            boolean and = b.operator().equals("and");
+            Label decided = new Label();
+            Label end = new Label();
+            for(Expression side : List.of(b.left(), b.right())){
+                distribute(side);
+                code.invoke(INVOKESTATIC, RUNTIME, "truthy", "(" + OBJECT + ")Z");
+                code.jump(and ? IFEQ : IFNE, decided);
+            }
+            code.field(GETSTATIC, "java/lang/Boolean", and ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+            code.jump(GOTO, end);
+            code.mark(decided);
+            code.field(GETSTATIC, "java/lang/Boolean", and ? "FALSE" : "TRUE", "Ljava/lang/Boolean;");
+            code.mark(end);
+            return null;
+        }
+        distribute(b.left());
+        distribute(b.right());
+        code.invoke(INVOKESTATIC, RUNTIME, operators.get(b.operator()), BINARY);
+        return null;
+    }
+
+    @Override
+    public Void visit(UnaryExpression u) {
+        distribute(u.right());
+        frame.code.invoke(INVOKESTATIC, RUNTIME, u.operator().equals("-") ? "negate" : "not", UNARY);
+        return null;
+    }
+
+    @Override
+    public Void visit(IndexExpression i) {
+        postfix(i);
+        return null;
+    }
+
+    @Override
+    public Void visit(CallExpression c) {
+        postfix(c);
+        return null;
+    }
+
+    @Override
+    public Void visit(AccessExpression a) {
+        postfix(a);
+        return null;
+    }
+
+    /*
+     * The parser nests a run of postfix operators with the first one outermost, so a.b(c)
+     * arrives as Access(Call(a, [c]), b). Peeling them off from the outside gives them back
+     * in source order, and each one then works on what the ones before it left.
+     */
+    private void postfix(Expression expression){
+        ArrayList<Expression> operations = new ArrayList<Expression>();
+        Expression base = expression;
+        while(true){
+            if(base instanceof AccessExpression a){
+                operations.add(a);
+                base = a.object();
+            } else if(base instanceof CallExpression c){
+                operations.add(c);
+                base = c.function();
+            } else if(base instanceof IndexExpression i){
+                operations.add(i);
+                base = i.object();
+            } else {
+                break;
+            }
+        }
+        Code code = frame.code;
+        int next = 0;
+        String function = base instanceof IdentifierLiteral i ? i.value() : base instanceof PrototypeLiteral p ? p.value() : null;
+        if(function != null && !operations.isEmpty() && operations.get(0) instanceof CallExpression call){
+            call(function, call.arguments().size(), i -> distribute(call.arguments().get(i)));
+            next = 1;
+        } else {
+            distribute(base);
+        }
+        while(next < operations.size()){
+            Expression operation = operations.get(next++);
+            if(operation instanceof AccessExpression access){
+                boolean onSelf = base instanceof SelfLiteral && next == 1;
+                if(next < operations.size() && operations.get(next) instanceof CallExpression call){
+                    next++;
+                    if(onSelf && methodArity(access.attribute()) >= 0){
+                        checkArity(access.attribute(), methodArity(access.attribute()), call.arguments().size());
+                        call.arguments().forEach(argument -> distribute(argument));
+                        code.invoke(INVOKEVIRTUAL, frame.prototype.identifier(), access.attribute(), descriptor(call.arguments().size(), OBJECT));
+                    } else {
+                        code.pushString(access.attribute());
+                        array(call.arguments());
+                        code.invoke(INVOKESTATIC, RUNTIME, "invoke", "(" + OBJECT + "Ljava/lang/String;[" + OBJECT + ")" + OBJECT);
+                    }
+                } else if(onSelf){
+                    attributeOfSelf(access.attribute());
+                    code.field(GETFIELD, frame.prototype.identifier(), access.attribute(), OBJECT);
+                } else {
+                    code.pushString(access.attribute());
+                    code.invoke(INVOKESTATIC, RUNTIME, "attribute", "(" + OBJECT + "Ljava/lang/String;)" + OBJECT);
+                }
+            } else if(operation instanceof IndexExpression index){
+                distribute(index.index());
+                code.invoke(INVOKESTATIC, RUNTIME, "index", BINARY);
+            } else {
+                throw unsupported("Calling anything but a FUNC, PROTO or method");
+            }
+        }
+    }
+
+    /* Pipe Section */
+
+    /*
+     * Each pipe of the pipeline graph runs straight through in main. The values between two
+     * operators sit in locals; a stage is lowered by the graph, and a factory runs the rest of
+     * the pipe once per instance in a loop. Locals are given back after every pipe.
+     */
+    @Override
+    public Void visit(PipelinesDec p) {
+        PipelineGraph graph = PipelineGraph.of(p);
+        for(int source : graph.sources()){
+            int reserved = frame.nextLocal;
+            HashMap<String, Integer> names = new HashMap<String, Integer>(frame.locals);
+            ArrayList<Integer> values = new ArrayList<Integer>();
+            for(Expression input : graph.node(source).receivers()){
+                distribute(input);
+                values.add(frame.temporary());
+                frame.code.store(values.get(values.size() - 1));
+            }
+            stage(graph, source, values);
+            frame.nextLocal = reserved;
+            frame.locals = names;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(PipeExpression p) {
+        throw unsupported("A pipe outside the Pipelines block");
+    }
+
+    // Lowers the stages after the node from, which left values in the locals given
+    private void stage(PipelineGraph graph, int from, List<Integer> values){
+        List<Integer> after = graph.successors(from);
+        if(after.isEmpty()){
+            return;
+        }
+        PipelineGraph.Node node = graph.node(after.get(0));
+        if(node.kind() != PipelineGraph.Kind.FACTORY){
+            stage(graph, node.id(), PipelineGraph.stage(node, values, stages));
+            return;
+        }
+        Code code = frame.code;
+        array(values.size(), i -> code.load(values.get(i)));
+        code.invoke(INVOKESTATIC, RUNTIME, "instances", ARRAY.replace(OBJECT + ")" + OBJECT, OBJECT + ")Ljava/util/List;"));
+        code.invoke(INVOKEINTERFACE, "java/util/List", "iterator", "()Ljava/util/Iterator;");
+        int iterator = frame.temporary();
+        code.store(iterator);
+        Label loop = new Label();
+        Label end = new Label();
+        code.mark(loop);
+        code.load(iterator);
+        code.invoke(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z");
+        code.jump(IFEQ, end);
+        code.load(iterator);
+        code.invoke(INVOKEINTERFACE, "java/util/Iterator", "next", "()" + OBJECT);
+        int instance = frame.temporary();
+        code.store(instance);
+        ArrayList<Integer> names = new ArrayList<Integer>();
+        for(Expression receiver : node.receivers()){
+            frame.locals.put(PipelineGraph.receiverName(receiver), instance);
+            names.add(instance);
+        }
+        stage(graph, node.id(), names);
+        code.jump(GOTO, loop);
+        code.mark(end);
+    }
+
+    // Each step of a stage stores its result in a local of its own
+    private final PipelineGraph.Target<Integer> stages = new PipelineGraph.Target<Integer>() {
+        @Override
+        public Integer cast(Integer value, String type){
+            frame.code.load(value);
+            frame.code.pushString(type);
+            frame.code.invoke(INVOKESTATIC, RUNTIME, "cast", "(" + OBJECT + "Ljava/lang/String;)" + OBJECT);
+            return store();
+        }
+
+        @Override
+        public Integer attribute(Integer instance, String attribute){
+            frame.code.load(instance);
+            frame.code.pushString(attribute);
+            frame.code.invoke(INVOKESTATIC, RUNTIME, "attribute", "(" + OBJECT + "Ljava/lang/String;)" + OBJECT);
+            return store();
+        }
+
+        @Override
+        public Integer call(String receiver, List<Integer> arguments){
+            BytecodeGenerator.this.call(receiver, arguments.size(), i -> frame.code.load(arguments.get(i)));
+            return store();
+        }
+
+        @Override
+        public int arity(String receiver){
+            return BytecodeGenerator.this.arity(receiver);
+        }
+
+        private int store(){
+            int local = frame.temporary();
+            frame.code.store(local);
+            return local;
+        }
+    };
+
+    public static void main(String[] args) throws UnexpectedMatchException, IOException {
+        Parser parser;
+        String[] input = new String[0];
+        if(args.length > 0){
+            parser = new Parser(new Lexer(Path.of(args[0])));
+            input = Arrays.copyOfRange(args, 1, args.length);
+        } else {
+            String program = """
+                Definitions {
+                    INT a <== 7 + 2 - (-3 + 4)
+                    a <%% 10 ^ 2
+                    RAT c <== 7 / 2
+                    STR d <== "ka"
+                    d <++ "lima"
+                    STR FUNC e ( STR f, STR x ) {
+                        return f + "boom" + x
+                    }
+                    INT FUNC fib ( INT n ) {
+                        if(n < 2){
+                            return n
+                        }
+                        return fib(n - 1) + fib(n - 2)
+                    }
+                    PROTO G {
+                        ATR STR h
+                        G FUNC G( STR x ){
+                            self.h <== x
+                        }
+                        ATR STR FUNC getH(){
+                            return self.h
+                        }
+                    }
+                    G i <== G("this is a good sentence")
+                    ||INT|| k <== #INT#|| 1, 2, 5, 7, 13, 20 ||
+                    k.remove(k.search(7))
+                    INT total <== 0
+                    for(INT n <== 0 : n < 5 : n <++ 1){
+                        if(n == 3 or n == 4 and false){
+                            continue
+                        }
+                        total <++ n
+                    }
+                }
+                Pipelines {
+                    a, c, total --> print
+                    d, d --> e --> print
+                    i -h-> print
+                    k --<( x --> fib --> print
+                    INPUT --> print
+                }
+                """;
+            parser = new Parser(new Lexer(program));
+        }
+        long start = System.nanoTime();
+        Map<String, byte[]> classes = compile(parser.root);
+        Class<?> loaded = load(classes);
+        long compiled = System.nanoTime() - start;
+        run(classes, input);
+        System.out.printf("Compiled and loaded %s and %d more classes in %.2f ms%n", loaded.getName(), classes.size() - 1, compiled / 1e6);
+    }
+
+}
@@ -0,0 +1,441 @@
+package JavaCompiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * Just enough of the class file format to write the classes the bytecode backend needs.
+ * Classes are written as version 49, the last version the JVM still verifies by inferring
+ * types itself, so methods need no stack map frames and branches can go anywhere.
+ */
+class ClassWriter {
+
+    static final int PUBLIC = 0x0001;
+    static final int STATIC = 0x0008;
+    static final int SUPER = 0x0020;
+
+    private static final int VERSION = 49;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final HashMap<String, Integer> constants = new HashMap<String, Integer>();
+    private int poolSize = 1;
+
+    private final String name;
+    private final String superName;
+    private final ArrayList<byte[]> fields = new ArrayList<byte[]>();
+    private final ArrayList<byte[]> methods = new ArrayList<byte[]>();
+
+    ClassWriter(String name, String superName){
+        this.name = name;
+        this.superName = superName;
+    }
+
+    String name(){
+        return name;
+    }
+
+    /* Constant Pool Section */
+
+    private interface Entry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Each constant is written once, later uses get the index of the first
+    private int constant(String key, Entry entry){
+        Integer index = constants.get(key);
+        if(index == null){
+            if(poolSize == 0xFFFF){
+                throw new IllegalStateException(name + " needs more than 65534 constants");
+            }
+            index = poolSize;
+            try {
+                entry.write(pool);
+            } catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+            poolSize++;
+            constants.put(key, index);
+        }
+        return index;
+    }
+
+    int utf8(String value){
+        return constant("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    int classRef(String internalName){
+        int nameIndex = utf8(internalName);
+        return constant("C" + internalName, out -> {
+            out.writeByte(7);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    int string(String value){
+        int valueIndex = utf8(value);
+        return constant("S" + value, out -> {
+            out.writeByte(8);
+            out.writeShort(valueIndex);
+        });
+    }
+
+    int integer(int value){
+        return constant("I" + value, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    int floating(float value){
+        return constant("F" + Float.floatToIntBits(value), out -> {
+            out.writeByte(4);
+            out.writeFloat(value);
+        });
+    }
+
+    private int nameAndType(String memberName, String descriptor){
+        int nameIndex = utf8(memberName);
+        int descriptorIndex = utf8(descriptor);
+        return constant("N" + memberName + ":" + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private int member(int tag, String owner, String memberName, String descriptor){
+        int ownerIndex = classRef(owner);
+        int typeIndex = nameAndType(memberName, descriptor);
+        return constant(tag + owner + "." + memberName + ":" + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(typeIndex);
+        });
+    }
+
+    int fieldRef(String owner, String fieldName, String descriptor){
+        return member(9, owner, fieldName, descriptor);
+    }
+
+    int methodRef(String owner, String methodName, String descriptor){
+        return member(10, owner, methodName, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String methodName, String descriptor){
+        return member(11, owner, methodName, descriptor);
+    }
+
+    /* Member Section */
+
+    void field(int access, String fieldName, String descriptor){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(fieldName));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    // The body is written into the returned Code, which adds the method once it is finished
+    Code method(int access, String methodName, String descriptor, int parameterSlots){
+        return new Code(access, methodName, descriptor, parameterSlots);
+    }
+
+    byte[] toBytes(){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            int thisIndex = classRef(name);
+            int superIndex = classRef(superName);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            poolBytes.writeTo(out);
+            out.writeShort(PUBLIC | SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for(byte[] field : fields){
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for(byte[] method : methods){
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /* Code Section */
+
+    static class Label {
+        private int position = -1;
+        private int stack = -1;
+        private final ArrayList<int[]> jumps = new ArrayList<int[]>();
+    }
+
+    static final int ACONST_NULL = 0x01;
+    static final int ALOAD = 0x19;
+    static final int ASTORE = 0x3a;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int PUTSTATIC = 0xb3;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int NEW = 0xbb;
+    static final int ANEWARRAY = 0xbd;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int ICONST_0 = 0x03;
+    private static final int WIDE = 0xc4;
+
+    /*
+     * One method body. Every instruction keeps track of how deep the operand stack is, so the
+     * limits the class file has to declare fall out of writing the code. Jumps are patched
+     * when the method is finished, and a label takes the depth of the jumps into it.
+     */
+    class Code {
+        private final int access;
+        private final String methodName;
+        private final String descriptor;
+        private byte[] code = new byte[256];
+        private int length = 0;
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals;
+        private final ArrayList<Label> labels = new ArrayList<Label>();
+
+        private Code(int access, String methodName, String descriptor, int parameterSlots){
+            this.access = access;
+            this.methodName = methodName;
+            this.descriptor = descriptor;
+            this.maxLocals = parameterSlots;
+        }
+
+        int size(){
+            return length;
+        }
+
+        private void u1(int value){
+            if(length == code.length){
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = (byte) value;
+        }
+
+        private void u2(int value){
+            u1(value >> 8);
+            u1(value);
+        }
+
+        private void push(int delta){
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        void op(int opcode, int delta){
+            u1(opcode);
+            push(delta);
+        }
+
+        void pushNull(){
+            op(ACONST_NULL, 1);
+        }
+
+        void pushInt(int value){
+            if(value >= -1 && value <= 5){
+                op(ICONST_0 + value, 1);
+            } else if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE){
+                op(BIPUSH, 1);
+                u1(value);
+            } else if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE){
+                op(SIPUSH, 1);
+                u2(value);
+            } else {
+                constant(integer(value));
+            }
+        }
+
+        void pushFloat(float value){
+            constant(floating(value));
+        }
+
+        void pushString(String value){
+            constant(string(value));
+        }
+
+        private void constant(int index){
+            if(index < 256){
+                op(LDC, 1);
+                u1(index);
+            } else {
+                op(LDC_W, 1);
+                u2(index);
+            }
+        }
+
+        void load(int slot){
+            local(ALOAD, slot);
+            push(1);
+        }
+
+        void store(int slot){
+            local(ASTORE, slot);
+            push(-1);
+        }
+
+        private void local(int opcode, int slot){
+            maxLocals = Math.max(maxLocals, slot + 1);
+            if(slot < 256){
+                u1(opcode);
+                u1(slot);
+            } else {
+                u1(WIDE);
+                u1(opcode);
+                u2(slot);
+            }
+        }
+
+        void field(int opcode, String owner, String fieldName, String fieldDescriptor){
+            op(opcode, switch(opcode){
+                case GETSTATIC -> 1;
+                case PUTSTATIC -> -1;
+                case GETFIELD -> 0;
+                default -> -2;
+            });
+            u2(fieldRef(owner, fieldName, fieldDescriptor));
+        }
+
+        void invoke(int opcode, String owner, String invokedName, String invokedDescriptor){
+            int arguments = arguments(invokedDescriptor);
+            int delta = (invokedDescriptor.endsWith(")V") ? 0 : 1) - arguments - (opcode == INVOKESTATIC ? 0 : 1);
+            if(opcode == INVOKEINTERFACE){
+                op(opcode, delta);
+                u2(interfaceMethodRef(owner, invokedName, invokedDescriptor));
+                u1(arguments + 1);
+                u1(0);
+            } else {
+                op(opcode, delta);
+                u2(methodRef(owner, invokedName, invokedDescriptor));
+            }
+        }
+
+        void type(int opcode, String internalName){
+            op(opcode, opcode == NEW ? 1 : 0);
+            u2(classRef(internalName));
+        }
+
+        void jump(int opcode, Label label){
+            int at = length;
+            op(opcode, opcode == GOTO ? 0 : -1);
+            label.jumps.add(new int[]{at, length});
+            u2(0);
+            if(label.stack < 0){
+                label.stack = stack;
+            }
+            if(!labels.contains(label)){
+                labels.add(label);
+            }
+        }
+
+        // Binds label here; after a goto the depth is the one jumps into the label had
+        void mark(Label label){
+            label.position = length;
+            if(label.stack >= 0){
+                stack = label.stack;
+            } else {
+                label.stack = stack;
+            }
+            if(!labels.contains(label)){
+                labels.add(label);
+            }
+        }
+
+        void finish(){
+            for(Label label : labels){
+                for(int[] jump : label.jumps){
+                    int offset = label.position - jump[0];
+                    if(offset < Short.MIN_VALUE || offset > Short.MAX_VALUE){
+                        throw new IllegalStateException(methodName + " is too large to branch across");
+                    }
+                    code[jump[1]] = (byte) (offset >> 8);
+                    code[jump[1] + 1] = (byte) offset;
+                }
+            }
+            if(length > 65535){
+                throw new IllegalStateException(methodName + " is larger than a method can be");
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeShort(access);
+                out.writeShort(utf8(methodName));
+                out.writeShort(utf8(descriptor));
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + length);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(length);
+                out.write(code, 0, length);
+                out.writeShort(0);
+                out.writeShort(0);
+            } catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+            methods.add(bytes.toByteArray());
+        }
+    }
+
+    // Operand slots the arguments of a method descriptor take, every argument here is one slot
+    private static int arguments(String descriptor){
+        int count = 0;
+        int i = 1;
+        while(descriptor.charAt(i) != ')'){
+            char c = descriptor.charAt(i);
+            boolean array = c == '[';
+            while(c == '['){
+                c = descriptor.charAt(++i);
+            }
+            if(c == 'L'){
+                i = descriptor.indexOf(';', i);
+            }
+            count += !array && (c == 'J' || c == 'D') ? 2 : 1;
+            i++;
+        }
+        return count;
+    }
+
+}
@@ -7,11 +7,58 @@ public class Core {
 
     /* Interface Section */
 
-    interface Statement {}
-
-    interface Expression {}
+    /*
+     * Sealed to the records in this file, so a visitor has to say what it does with every
+     * kind of node and dispatch is a single virtual call instead of a lookup by class name.
+     */
+    sealed interface Node {
+        <R> R accept(Visitor<R> visitor);
+    }
 
-    interface Prototype {}
+    sealed interface Statement extends Node {}
+
+    sealed interface Expression extends Node {}
+
+    sealed interface Prototype {}
+
+    interface Visitor<R> {
+        R visit(Program node);
+        R visit(ImportDec node);
+        R visit(DefinitionsDec node);
+        R visit(VariableDec node);
+        R visit(Assignment node);
+        R visit(FunctionDec node);
+        R visit(ParameterDec node);
+        R visit(PrototypeDec node);
+        R visit(AttributeDec node);
+        R visit(MethodDec node);
+        R visit(ConstructorDec node);
+        R visit(IfStatement node);
+        R visit(WhileStatement node);
+        R visit(ForStatement node);
+        R visit(ReturnStatement node);
+        R visit(ContinueStatement node);
+        R visit(BreakStatement node);
+        R visit(ExpressionStatement node);
+        R visit(RationalLiteral node);
+        R visit(IntegerLiteral node);
+        R visit(BooleanLiteral node);
+        R visit(StringLiteral node);
+        R visit(SelfLiteral node);
+        R visit(DoesNotExistLiteral node);
+        R visit(PrototypeLiteral node);
+        R visit(IdentifierLiteral node);
+        R visit(ListLiteral node);
+        R visit(MapLiteral node);
+        R visit(KeyValuePair node);
+        R visit(BinaryExpression node);
+        R visit(UnaryExpression node);
+        R visit(IndexExpression node);
+        R visit(CallExpression node);
+        R visit(AccessExpression node);
+        R visit(PipelinesDec node);
+        R visit(PipeExpression node);
+    }
 
     /* Type Section */
 
@@ -29,86 +76,240 @@ public class Core {
 
     /* Statement Section */
 
-    public record Token(String category, String lexeme, Integer line, Integer column) {
+    // Positions are kept as source offsets, lines and columns are looked up when asked for
+    public record Token(String category, String lexeme, int offset, LineIndex lines) {
+        public int line(){
+            return lines.line(offset);
+        }
+
+        public int column(){
+            return lines.column(offset);
+        }
+
         @Override
         public String toString(){
             return this.lexeme;
         }
     }
 
-    public record Program(Optional<ArrayList<ImportDec>> imports, Optional<DefinitionsDec> definition, Optional<PipelinesDec> pipeline) {}
+    public record Program(Optional<ArrayList<ImportDec>> imports, Optional<DefinitionsDec> definition, Optional<PipelinesDec> pipeline) implements Node {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
     
-    public record ImportDec(String path) {}
+    public record ImportDec(String path) implements Node {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record DefinitionsDec(Optional<ArrayList<Statement>> statements) {}
+    public record DefinitionsDec(Optional<ArrayList<Statement>> statements) implements Node {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record VariableDec(Prototype type, String identifier, String assignmentOperator, Expression expression) implements Statement {}
+    public record VariableDec(Prototype type, String identifier, String assignmentOperator, Expression expression) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record Assignment(Boolean self, String identifier, String assignmentOperator, Expression expression) implements Statement {}
+    public record Assignment(Boolean self, String identifier, String assignmentOperator, Expression expression) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record FunctionDec(Prototype returnType, String identifier, ArrayList<ParameterDec> parameters, ArrayList<Statement> statements) implements Statement {}
+    public record FunctionDec(Prototype returnType, String identifier, ArrayList<ParameterDec> parameters, ArrayList<Statement> statements) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record ParameterDec(Prototype type, String identifier) {}
+    public record ParameterDec(Prototype type, String identifier) implements Node {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record PrototypeDec(Prototype type, String identifier, ArrayList<Statement> statements) implements Statement {}
+    public record PrototypeDec(Prototype type, String identifier, ArrayList<Statement> statements) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record AttributeDec(Prototype type, String identifier, Optional<String> assignmentOperator, Optional<Expression> expression) implements Statement {}
+    public record AttributeDec(Prototype type, String identifier, Optional<String> assignmentOperator, Optional<Expression> expression) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record MethodDec(Prototype returnType, String identifier, ArrayList<ParameterDec> parameters, ArrayList<Statement> statements) implements Statement {}
+    public record MethodDec(Prototype returnType, String identifier, ArrayList<ParameterDec> parameters, ArrayList<Statement> statements) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record ConstructorDec(Prototype parent, ArrayList<ParameterDec> parameters, ArrayList<Statement> statements) implements Statement {}
+    public record ConstructorDec(Prototype parent, ArrayList<ParameterDec> parameters, ArrayList<Statement> statements) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record IfStatement(Expression condition, ArrayList<Statement> statements) implements Statement {}
+    public record IfStatement(Expression condition, ArrayList<Statement> statements) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record WhileStatement(Expression condition, ArrayList<Statement> statements) implements Statement {}
+    public record WhileStatement(Expression condition, ArrayList<Statement> statements) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record ForStatement(Statement assignment, Expression condition, Statement iteration, ArrayList<Statement> statements) implements Statement {}
+    public record ForStatement(Statement assignment, Expression condition, Statement iteration, ArrayList<Statement> statements) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record ReturnStatement(Optional<Expression> expression) implements Statement {}
+    public record ReturnStatement(Optional<Expression> expression) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record ContinueStatement() implements Statement {}
+    public record ContinueStatement() implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record BreakStatement() implements Statement {}
+    public record BreakStatement() implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record ExpressionStatement(Expression expression) implements Statement {}
+    public record ExpressionStatement(Expression expression) implements Statement {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
     /* Expression Section */
 
-    public record RationalLiteral(Float value) implements Expression {}
+    public record RationalLiteral(Float value) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record IntegerLiteral(Integer value) implements Expression {}
+    public record IntegerLiteral(Integer value) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record BooleanLiteral(Boolean value) implements Expression {}
+    public record BooleanLiteral(Boolean value) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record StringLiteral(String value) implements Expression {}
+    public record StringLiteral(String value) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record SelfLiteral() implements Expression {}
+    public record SelfLiteral() implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record DoesNotExistLiteral(String value) implements Expression {}
+    public record DoesNotExistLiteral(String value) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record PrototypeLiteral(String value) implements Expression {}
+    public record PrototypeLiteral(String value) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record IdentifierLiteral(String value) implements Expression {}
+    public record IdentifierLiteral(String value) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record ListLiteral(String type, ArrayList<Expression> contents) implements Expression {}
+    public record ListLiteral(String type, ArrayList<Expression> contents) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record MapLiteral(String type, ArrayList<KeyValuePair> contents) implements Expression {}
+    public record MapLiteral(String type, ArrayList<KeyValuePair> contents) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record KeyValuePair(Expression key, Expression value) implements Expression {}
+    public record KeyValuePair(Expression key, Expression value) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record BinaryExpression(Expression left, String operator, Expression right) implements Expression {}
+    public record BinaryExpression(Expression left, String operator, Expression right) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record UnaryExpression(String operator, Expression right) implements Expression {}
+    public record UnaryExpression(String operator, Expression right) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record IndexExpression(Expression object, Expression index) implements Expression {}
+    public record IndexExpression(Expression object, Expression index) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record CallExpression(Expression function, ArrayList<Expression> arguments) implements Expression {}
+    public record CallExpression(Expression function, ArrayList<Expression> arguments) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record AccessExpression(Expression object, String attribute) implements Expression {}
+    public record AccessExpression(Expression object, String attribute) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    //Make an Thread Pool for this in future
-    public record PipelinesDec(ArrayList<PipeExpression> pipes) {}
+    // The Java backend runs every pipe as a task of its own, see Scheduler
+    public record PipelinesDec(ArrayList<PipeExpression> pipes) implements Node {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
-    public record PipeExpression(Expression left, String operator, PipeExpression right) {}
+    // inputs operator target, where the target is the rest of the pipe or the identifier it ends in
+    public record PipeExpression(ArrayList<Expression> inputs, String operator, Expression target) implements Expression {
+        public <R> R accept(Visitor<R> visitor){
+            return visitor.visit(this);
+        }
+    }
 
 }
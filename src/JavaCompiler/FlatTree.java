@@ -0,0 +1,746 @@
+package JavaCompiler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Optional;
+
+import JavaCompiler.Core.*;
+import JavaCompiler.Parser.UnexpectedMatchException;
+
+/*
+ * A program stored column-wise: every node is an index into a handful of arrays instead
+ * of an object with its own header and lists. Nodes are laid out breadth first, so all the
+ * children of a node sit next to each other, right behind the children of the node before
+ * it, and the first child of the next node is where its own children end. Names, operators
+ * and literal values are ints: integers as they are, rationals as their float bits, booleans
+ * as 0 or 1, and strings as indices into one table holding every distinct string once, -1 for
+ * an absent one. A node with one of them keeps it in the values column, the few with more keep
+ * them in consecutive slots of a fields column and the first slot's index in the values column.
+ * Types are a single TYPE node whose value indexes a table of the interned prototypes, since a
+ * prototype is already one shared object per compilation.
+ */
+class FlatTree {
+
+    enum Kind {
+        PROGRAM, IMPORT, DEFINITIONS, VARIABLE, ASSIGNMENT, FUNCTION, PARAMETER, PROTOTYPE, ATTRIBUTE, METHOD, CONSTRUCTOR,
+        IF, WHILE, FOR, RETURN, CONTINUE, BREAK, EXPRESSION_STATEMENT,
+        RATIONAL, INTEGER, BOOLEAN, STRING, SELF, DOES_NOT_EXIST, PROTOTYPE_LITERAL, IDENTIFIER,
+        LIST, MAP, KEY_VALUE, BINARY, UNARY, INDEX, CALL, ACCESS,
+        PIPELINES, PIPE, TYPE,
+        // A list field of a record, and an empty Optional
+        GROUP, NONE
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    /*
+     * Walked depth first. Children are skipped when enter returns false, leave is called
+     * either way, and both are called for GROUP and NONE nodes too.
+     */
+    interface Visitor {
+        default boolean enter(FlatTree tree, int node){
+            return true;
+        }
+
+        default void leave(FlatTree tree, int node){}
+    }
+
+    private byte[] kinds = new byte[1024];
+    private int[] firsts = new int[1024];
+    private int[] values = new int[1024];
+    private int[] fields = new int[64];
+    private int fieldsSize = 0;
+    private int size = 0;
+    private ArrayList<String> strings = new ArrayList<String>();
+    private ArrayList<Prototype> types = new ArrayList<Prototype>();
+
+    // While building, the records still waiting to be expanded, indexed like the nodes they became, and the table index of everything stored so far
+    private Object[] pending = new Object[1024];
+    private HashMap<String, Integer> stringIndices = new HashMap<String, Integer>();
+    private IdentityHashMap<Prototype, Integer> typeIndices = new IdentityHashMap<Prototype, Integer>();
+
+    /*
+     * Node 0 is the program. Its children go in next, then their children, and so on, so
+     * expanding the nodes in index order is a breadth first walk of the record tree.
+     */
+    static FlatTree of(Program program){
+        FlatTree tree = new FlatTree();
+        tree.add(program);
+        for(int node = 0; node < tree.size; node++){
+            tree.expand(node, tree.pending[node]);
+            tree.pending[node] = null;
+        }
+        tree.pending = null;
+        tree.stringIndices = null;
+        tree.typeIndices = null;
+        tree.trim();
+        return tree;
+    }
+
+    private int add(Object record){
+        if(size == kinds.length){
+            int grown = size * 2;
+            kinds = Arrays.copyOf(kinds, grown);
+            firsts = Arrays.copyOf(firsts, grown);
+            values = Arrays.copyOf(values, grown);
+            pending = Arrays.copyOf(pending, grown);
+        }
+        kinds[size] = (byte) kindOf(record).ordinal();
+        pending[size] = record;
+        return size++;
+    }
+
+    // Gives back the room the arrays grew into, the tree never changes once built
+    private void trim(){
+        kinds = Arrays.copyOf(kinds, size);
+        firsts = Arrays.copyOf(firsts, size + 1);
+        firsts[size] = size;
+        values = Arrays.copyOf(values, size);
+        fields = Arrays.copyOf(fields, fieldsSize);
+        strings.trimToSize();
+        types.trimToSize();
+    }
+
+    private void addAll(ArrayList<?> records){
+        for(Object record : records){
+            add(record);
+        }
+    }
+
+    private void add(Optional<?> record){
+        add(record.orElse(null));
+    }
+
+    // Appends the next value of the node being expanded, expand moves a lone one over to the values column
+    private void store(int value){
+        if(fieldsSize == fields.length){
+            fields = Arrays.copyOf(fields, fieldsSize * 2);
+        }
+        fields[fieldsSize++] = value;
+    }
+
+    private void store(float value){
+        store(Float.floatToIntBits(value));
+    }
+
+    private void store(boolean value){
+        store(value ? 1 : 0);
+    }
+
+    private void store(String value){
+        if(value == null){
+            store(-1);
+            return;
+        }
+        Integer index = stringIndices.get(value);
+        if(index == null){
+            index = strings.size();
+            strings.add(value);
+            stringIndices.put(value, index);
+        }
+        store(index.intValue());
+    }
+
+    private void store(Prototype type){
+        Integer index = typeIndices.get(type);
+        if(index == null){
+            index = types.size();
+            types.add(type);
+            typeIndices.put(type, index);
+        }
+        store(index.intValue());
+    }
+
+    // The kind of every record that is a Node
+    private static final Core.Visitor<Kind> KIND_OF = new Core.Visitor<Kind>(){
+        @Override
+        public Kind visit(Program node){
+            return Kind.PROGRAM;
+        }
+
+        @Override
+        public Kind visit(ImportDec node){
+            return Kind.IMPORT;
+        }
+
+        @Override
+        public Kind visit(DefinitionsDec node){
+            return Kind.DEFINITIONS;
+        }
+
+        @Override
+        public Kind visit(VariableDec node){
+            return Kind.VARIABLE;
+        }
+
+        @Override
+        public Kind visit(Assignment node){
+            return Kind.ASSIGNMENT;
+        }
+
+        @Override
+        public Kind visit(FunctionDec node){
+            return Kind.FUNCTION;
+        }
+
+        @Override
+        public Kind visit(ParameterDec node){
+            return Kind.PARAMETER;
+        }
+
+        @Override
+        public Kind visit(PrototypeDec node){
+            return Kind.PROTOTYPE;
+        }
+
+        @Override
+        public Kind visit(AttributeDec node){
+            return Kind.ATTRIBUTE;
+        }
+
+        @Override
+        public Kind visit(MethodDec node){
+            return Kind.METHOD;
+        }
+
+        @Override
+        public Kind visit(ConstructorDec node){
+            return Kind.CONSTRUCTOR;
+        }
+
+        @Override
+        public Kind visit(IfStatement node){
+            return Kind.IF;
+        }
+
+        @Override
+        public Kind visit(WhileStatement node){
+            return Kind.WHILE;
+        }
+
+        @Override
+        public Kind visit(ForStatement node){
+            return Kind.FOR;
+        }
+
+        @Override
+        public Kind visit(ReturnStatement node){
+            return Kind.RETURN;
+        }
+
+        @Override
+        public Kind visit(ContinueStatement node){
+            return Kind.CONTINUE;
+        }
+
+        @Override
+        public Kind visit(BreakStatement node){
+            return Kind.BREAK;
+        }
+
+        @Override
+        public Kind visit(ExpressionStatement node){
+            return Kind.EXPRESSION_STATEMENT;
+        }
+
+        @Override
+        public Kind visit(RationalLiteral node){
+            return Kind.RATIONAL;
+        }
+
+        @Override
+        public Kind visit(IntegerLiteral node){
+            return Kind.INTEGER;
+        }
+
+        @Override
+        public Kind visit(BooleanLiteral node){
+            return Kind.BOOLEAN;
+        }
+
+        @Override
+        public Kind visit(StringLiteral node){
+            return Kind.STRING;
+        }
+
+        @Override
+        public Kind visit(SelfLiteral node){
+            return Kind.SELF;
+        }
+
+        @Override
+        public Kind visit(DoesNotExistLiteral node){
+            return Kind.DOES_NOT_EXIST;
+        }
+
+        @Override
+        public Kind visit(PrototypeLiteral node){
+            return Kind.PROTOTYPE_LITERAL;
+        }
+
+        @Override
+        public Kind visit(IdentifierLiteral node){
+            return Kind.IDENTIFIER;
+        }
+
+        @Override
+        public Kind visit(ListLiteral node){
+            return Kind.LIST;
+        }
+
+        @Override
+        public Kind visit(MapLiteral node){
+            return Kind.MAP;
+        }
+
+        @Override
+        public Kind visit(KeyValuePair node){
+            return Kind.KEY_VALUE;
+        }
+
+        @Override
+        public Kind visit(BinaryExpression node){
+            return Kind.BINARY;
+        }
+
+        @Override
+        public Kind visit(UnaryExpression node){
+            return Kind.UNARY;
+        }
+
+        @Override
+        public Kind visit(IndexExpression node){
+            return Kind.INDEX;
+        }
+
+        @Override
+        public Kind visit(CallExpression node){
+            return Kind.CALL;
+        }
+
+        @Override
+        public Kind visit(AccessExpression node){
+            return Kind.ACCESS;
+        }
+
+        @Override
+        public Kind visit(PipelinesDec node){
+            return Kind.PIPELINES;
+        }
+
+        @Override
+        public Kind visit(PipeExpression node){
+            return Kind.PIPE;
+        }
+    };
+
+    static Kind kindOf(Object record){
+        if(record instanceof Node node){
+            return node.accept(KIND_OF);
+        } else if(record == null){
+            return Kind.NONE;
+        } else if(record instanceof ArrayList){
+            return Kind.GROUP;
+        }
+        return Kind.TYPE;
+    }
+
+    // Appends the children of node and stores its values, the layout per kind is the one fromNode reads
+    private void expand(int node, Object record){
+        firsts[node] = size;
+        int stored = fieldsSize;
+        switch(KINDS[kinds[node]]){
+            case GROUP -> addAll((ArrayList<?>) record);
+            case TYPE -> store((Prototype) record);
+            case PROGRAM -> {
+                Program program = (Program) record;
+                add(program.imports());
+                add(program.definition());
+                add(program.pipeline());
+            }
+            case IMPORT -> store(((ImportDec) record).path());
+            case DEFINITIONS -> add(((DefinitionsDec) record).statements());
+            case VARIABLE -> {
+                VariableDec variable = (VariableDec) record;
+                add(variable.type());
+                add(variable.expression());
+                store(variable.identifier());
+                store(variable.assignmentOperator());
+            }
+            case ASSIGNMENT -> {
+                Assignment assignment = (Assignment) record;
+                add(assignment.expression());
+                store(assignment.self());
+                store(assignment.identifier());
+                store(assignment.assignmentOperator());
+            }
+            case FUNCTION -> {
+                FunctionDec function = (FunctionDec) record;
+                add(function.returnType());
+                add(function.parameters());
+                add(function.statements());
+                store(function.identifier());
+            }
+            case PARAMETER -> {
+                ParameterDec parameter = (ParameterDec) record;
+                add(parameter.type());
+                store(parameter.identifier());
+            }
+            case PROTOTYPE -> {
+                PrototypeDec prototype = (PrototypeDec) record;
+                add(prototype.type());
+                add(prototype.statements());
+                store(prototype.identifier());
+            }
+            case ATTRIBUTE -> {
+                AttributeDec attribute = (AttributeDec) record;
+                add(attribute.type());
+                add(attribute.expression());
+                store(attribute.identifier());
+                store(attribute.assignmentOperator().orElse(null));
+            }
+            case METHOD -> {
+                MethodDec method = (MethodDec) record;
+                add(method.returnType());
+                add(method.parameters());
+                add(method.statements());
+                store(method.identifier());
+            }
+            case CONSTRUCTOR -> {
+                ConstructorDec constructor = (ConstructorDec) record;
+                add(constructor.parent());
+                add(constructor.parameters());
+                add(constructor.statements());
+            }
+            case IF -> {
+                IfStatement statement = (IfStatement) record;
+                add(statement.condition());
+                add(statement.statements());
+            }
+            case WHILE -> {
+                WhileStatement statement = (WhileStatement) record;
+                add(statement.condition());
+                add(statement.statements());
+            }
+            case FOR -> {
+                ForStatement statement = (ForStatement) record;
+                add(statement.assignment());
+                add(statement.condition());
+                add(statement.iteration());
+                add(statement.statements());
+            }
+            case RETURN -> add(((ReturnStatement) record).expression());
+            case EXPRESSION_STATEMENT -> add(((ExpressionStatement) record).expression());
+            case RATIONAL -> store((float) ((RationalLiteral) record).value());
+            case INTEGER -> store((int) ((IntegerLiteral) record).value());
+            case BOOLEAN -> store((boolean) ((BooleanLiteral) record).value());
+            case STRING -> store(((StringLiteral) record).value());
+            case DOES_NOT_EXIST -> store(((DoesNotExistLiteral) record).value());
+            case PROTOTYPE_LITERAL -> store(((PrototypeLiteral) record).value());
+            case IDENTIFIER -> store(((IdentifierLiteral) record).value());
+            case LIST -> {
+                ListLiteral list = (ListLiteral) record;
+                addAll(list.contents());
+                store(list.type());
+            }
+            case MAP -> {
+                MapLiteral map = (MapLiteral) record;
+                addAll(map.contents());
+                store(map.type());
+            }
+            case KEY_VALUE -> {
+                KeyValuePair pair = (KeyValuePair) record;
+                add(pair.key());
+                add(pair.value());
+            }
+            case BINARY -> {
+                BinaryExpression binary = (BinaryExpression) record;
+                add(binary.left());
+                add(binary.right());
+                store(binary.operator());
+            }
+            case UNARY -> {
+                UnaryExpression unary = (UnaryExpression) record;
+                add(unary.right());
+                store(unary.operator());
+            }
+            case INDEX -> {
+                IndexExpression index = (IndexExpression) record;
+                add(index.object());
+                add(index.index());
+            }
+            case CALL -> {
+                CallExpression call = (CallExpression) record;
+                add(call.function());
+                addAll(call.arguments());
+            }
+            case ACCESS -> {
+                AccessExpression access = (AccessExpression) record;
+                add(access.object());
+                store(access.attribute());
+            }
+            case PIPELINES -> addAll(((PipelinesDec) record).pipes());
+            case PIPE -> {
+                PipeExpression pipe = (PipeExpression) record;
+                add(pipe.inputs());
+                add(pipe.target());
+                store(pipe.operator());
+            }
+            default -> {}
+        }
+        if(fieldsSize - stored == 1){
+            values[node] = fields[--fieldsSize];
+        } else {
+            values[node] = stored;
+        }
+    }
+
+    /*
+     * Children always come after their parent, so rebuilding the nodes from the last to the
+     * first has every child's record ready before its parent's, however deep the tree, with
+     * no recursion.
+     */
+    Program toProgram(){
+        Object[] built = new Object[size];
+        for(int node = size - 1; node >= 0; node--){
+            built[node] = fromNode(node, built);
+            // A record only ever has one parent, which now holds it
+            Arrays.fill(built, firsts[node], firsts[node + 1], null);
+        }
+        return (Program) built[0];
+    }
+
+    // Rebuilds the record a node was made from out of the records of its children, already in built
+    @SuppressWarnings("unchecked")
+    private Object fromNode(int node, Object[] built){
+        return switch(kind(node)){
+            case NONE -> null;
+            case GROUP -> {
+                ArrayList<Object> list = new ArrayList<Object>(count(node));
+                for(int i = 0; i < count(node); i++){
+                    list.add(built[child(node, i)]);
+                }
+                yield list;
+            }
+            case TYPE -> type(node);
+            case PROGRAM -> new Program(
+                Optional.ofNullable((ArrayList<ImportDec>) built[child(node, 0)]),
+                Optional.ofNullable((DefinitionsDec) built[child(node, 1)]),
+                Optional.ofNullable((PipelinesDec) built[child(node, 2)]));
+            case IMPORT -> new ImportDec(string(node, 0));
+            case DEFINITIONS -> new DefinitionsDec(Optional.ofNullable((ArrayList<Statement>) built[child(node, 0)]));
+            case VARIABLE -> new VariableDec((Prototype) built[child(node, 0)], string(node, 0), string(node, 1), expression(built, child(node, 1)));
+            case ASSIGNMENT -> new Assignment(bool(node, 0), string(node, 1), string(node, 2), expression(built, child(node, 0)));
+            case FUNCTION -> new FunctionDec((Prototype) built[child(node, 0)], string(node, 0), (ArrayList<ParameterDec>) built[child(node, 1)], statements(built, child(node, 2)));
+            case PARAMETER -> new ParameterDec((Prototype) built[child(node, 0)], string(node, 0));
+            case PROTOTYPE -> new PrototypeDec((Prototype) built[child(node, 0)], string(node, 0), statements(built, child(node, 1)));
+            case ATTRIBUTE -> new AttributeDec((Prototype) built[child(node, 0)], string(node, 0), Optional.ofNullable(string(node, 1)), Optional.ofNullable(expression(built, child(node, 1))));
+            case METHOD -> new MethodDec((Prototype) built[child(node, 0)], string(node, 0), (ArrayList<ParameterDec>) built[child(node, 1)], statements(built, child(node, 2)));
+            case CONSTRUCTOR -> new ConstructorDec((Prototype) built[child(node, 0)], (ArrayList<ParameterDec>) built[child(node, 1)], statements(built, child(node, 2)));
+            case IF -> new IfStatement(expression(built, child(node, 0)), statements(built, child(node, 1)));
+            case WHILE -> new WhileStatement(expression(built, child(node, 0)), statements(built, child(node, 1)));
+            case FOR -> new ForStatement((Statement) built[child(node, 0)], expression(built, child(node, 1)), (Statement) built[child(node, 2)], statements(built, child(node, 3)));
+            case RETURN -> new ReturnStatement(Optional.ofNullable(expression(built, child(node, 0))));
+            case CONTINUE -> new ContinueStatement();
+            case BREAK -> new BreakStatement();
+            case EXPRESSION_STATEMENT -> new ExpressionStatement(expression(built, child(node, 0)));
+            case RATIONAL -> new RationalLiteral(rational(node, 0));
+            case INTEGER -> new IntegerLiteral(integer(node, 0));
+            case BOOLEAN -> new BooleanLiteral(bool(node, 0));
+            case STRING -> new StringLiteral(string(node, 0));
+            case SELF -> new SelfLiteral();
+            case DOES_NOT_EXIST -> new DoesNotExistLiteral(string(node, 0));
+            case PROTOTYPE_LITERAL -> new PrototypeLiteral(string(node, 0));
+            case IDENTIFIER -> new IdentifierLiteral(string(node, 0));
+            case LIST -> new ListLiteral(string(node, 0), children(built, node, 0));
+            case MAP -> new MapLiteral(string(node, 0), children(built, node, 0));
+            case KEY_VALUE -> new KeyValuePair(expression(built, child(node, 0)), expression(built, child(node, 1)));
+            case BINARY -> new BinaryExpression(expression(built, child(node, 0)), string(node, 0), expression(built, child(node, 1)));
+            case UNARY -> new UnaryExpression(string(node, 0), expression(built, child(node, 0)));
+            case INDEX -> new IndexExpression(expression(built, child(node, 0)), expression(built, child(node, 1)));
+            case CALL -> new CallExpression(expression(built, child(node, 0)), children(built, node, 1));
+            case ACCESS -> new AccessExpression(expression(built, child(node, 0)), string(node, 0));
+            case PIPELINES -> new PipelinesDec(children(built, node, 0));
+            case PIPE -> new PipeExpression((ArrayList<Expression>) built[child(node, 0)], string(node, 0), expression(built, child(node, 1)));
+        };
+    }
+
+    private static Expression expression(Object[] built, int node){
+        return (Expression) built[node];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayList<Statement> statements(Object[] built, int node){
+        return (ArrayList<Statement>) built[node];
+    }
+
+    // The records of the children of node from the from-th on
+    @SuppressWarnings("unchecked")
+    private <T> ArrayList<T> children(Object[] built, int node, int from){
+        ArrayList<T> list = new ArrayList<T>(count(node) - from);
+        for(int i = from; i < count(node); i++){
+            list.add((T) built[child(node, i)]);
+        }
+        return list;
+    }
+
+    int size(){
+        return size;
+    }
+
+    int root(){
+        return 0;
+    }
+
+    Kind kind(int node){
+        return KINDS[kinds[node]];
+    }
+
+    int count(int node){
+        return firsts[node + 1] - firsts[node];
+    }
+
+    // Children of node are the nodes [first(node), first(node) + count(node))
+    int first(int node){
+        return firsts[node];
+    }
+
+    int child(int node, int index){
+        return firsts[node] + index;
+    }
+
+    // How many names, operators and literal values a node of kind has, the layout expand stores
+    static int values(Kind kind){
+        return switch(kind){
+            case VARIABLE, ATTRIBUTE -> 2;
+            case ASSIGNMENT -> 3;
+            case TYPE, IMPORT, FUNCTION, PARAMETER, PROTOTYPE, METHOD, RATIONAL, INTEGER, BOOLEAN, STRING, DOES_NOT_EXIST,
+                PROTOTYPE_LITERAL, IDENTIFIER, LIST, MAP, BINARY, UNARY, ACCESS, PIPE -> 1;
+            default -> 0;
+        };
+    }
+
+    // The index-th name, operator or literal value of node, boxed, null for an absent one
+    Object value(int node, int index){
+        return switch(kind(node)){
+            case TYPE -> type(node);
+            case RATIONAL -> rational(node, index);
+            case INTEGER -> integer(node, index);
+            case BOOLEAN -> bool(node, index);
+            case ASSIGNMENT -> index == 0 ? bool(node, index) : string(node, index);
+            default -> string(node, index);
+        };
+    }
+
+    int integer(int node, int index){
+        return values(kind(node)) == 1 ? values[node] : fields[values[node] + index];
+    }
+
+    float rational(int node, int index){
+        return Float.intBitsToFloat(integer(node, index));
+    }
+
+    boolean bool(int node, int index){
+        return integer(node, index) != 0;
+    }
+
+    String string(int node, int index){
+        int string = integer(node, index);
+        return string < 0 ? null : strings.get(string);
+    }
+
+    Prototype type(int node){
+        return types.get(integer(node, 0));
+    }
+
+    void walk(Visitor visitor){
+        walk(root(), visitor);
+    }
+
+    // Iterative, with an explicit stack of the nodes entered so far and the next child of each, so no depth is too deep
+    void walk(int node, Visitor visitor){
+        if(!visitor.enter(this, node)){
+            visitor.leave(this, node);
+            return;
+        }
+        int[] nodes = new int[64];
+        int[] next = new int[64];
+        nodes[0] = node;
+        next[0] = firsts[node];
+        int depth = 1;
+        while(depth > 0){
+            int top = depth - 1;
+            if(next[top] == firsts[nodes[top] + 1]){
+                visitor.leave(this, nodes[top]);
+                depth--;
+                continue;
+            }
+            int child = next[top]++;
+            if(!visitor.enter(this, child)){
+                visitor.leave(this, child);
+                continue;
+            }
+            if(depth == nodes.length){
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                next = Arrays.copyOf(next, depth * 2);
+            }
+            nodes[depth] = child;
+            next[depth] = firsts[child];
+            depth++;
+        }
+    }
+
+    // Prints the tree one node per line, indented by depth
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder();
+        walk(new Visitor(){
+            int depth = 0;
+
+            @Override
+            public boolean enter(FlatTree tree, int node){
+                builder.append("  ".repeat(depth)).append(node).append(" ").append(kind(node));
+                for(int i = 0; i < values(kind(node)); i++){
+                    builder.append(" ").append(value(node, i));
+                }
+                builder.append("\n");
+                depth++;
+                return true;
+            }
+
+            @Override
+            public void leave(FlatTree tree, int node){
+                depth--;
+            }
+        });
+        return builder.toString();
+    }
+
+    public static void main(String[] args) throws UnexpectedMatchException, IOException {
+        Parser parser;
+        if(args.length > 0){
+            parser = new Parser(new Lexer(Path.of(args[0])));
+        } else {
+            String program = """
+                Definitions {
+                    INT FUNC add ( INT x, INT y ) {
+                        return x + y * 2
+                    }
+                    ||INT|| l <== #INT#|| 1, 2, add(3, 4) ||
+                }
+                Pipelines {
+                    l, "p" --> f -(INT)-> g -h-i-> k
+                }
+                """;
+            parser = new Parser(new Lexer(program));
+        }
+        FlatTree tree = FlatTree.of(parser.root);
+        System.out.print(tree);
+        System.out.println(tree.toProgram().equals(parser.root) ? "Round trip matches" : "Round trip differs");
+    }
+
+}
@@ -1,17 +1,40 @@
 package JavaCompiler;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import JavaCompiler.Core.*;
 import JavaCompiler.Parser.UnexpectedMatchException;
 
-public class Generator {
-    private String output = "";
+/*
+ * Emits Java source for a Program straight into an Appendable, a StringBuilder by default or
+ * a Writer to stream into a file. Output is only ever appended: lists put their separator in
+ * front of every item but the first instead of trimming a trailing one off afterwards.
+ */
+public class Generator implements Visitor<Void> {
+    private final Appendable output;
     private HashMap<String, String> opMap = new HashMap<String, String>();
     private String indent = "   ";
     private Integer indentLevel = 1;
+    private final HashMap<String, FunctionDec> functions = new HashMap<String, FunctionDec>();
+    private final HashMap<String, PrototypeDec> prototypes = new HashMap<String, PrototypeDec>();
+    // Whether the declaration being generated is a member of Start
+    private boolean topLevel = false;
+    // Temporaries are numbered per pipe
+    private int temporaries = 0;
+    // Base types a pipe converts its values to, instead of only casting them
+    private static final List<BasePrototype> convertible = List.of(BasePrototype.INT, BasePrototype.RAT, BasePrototype.STR, BasePrototype.BOOL);
 
     Generator(Program p) {
+        this(p, new StringBuilder());
+    }
+
+    Generator(Program p, Appendable output) {
+        this.output = output;
         opMap.put("<==", "=");
         opMap.put("<++", "+=");
         opMap.put("<--", "-=");
@@ -37,12 +60,39 @@ public class Generator {
 
         this.distribute(p);
     }
+    // Generates p into file without holding the generated source in memory
+    static void write(Program p, Path file) throws IOException {
+        try(BufferedWriter writer = Files.newBufferedWriter(file)){
+            new Generator(p, writer);
+        } catch(UncheckedIOException e){
+            throw e.getCause();
+        }
+    }
+
+    private void emit(Object text){
+        try {
+            output.append(String.valueOf(text));
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Distributes every item, with a comma in front of all but the first
+    private void commaSeparated(List<? extends Node> items){
+        for(int i = 0; i < items.size(); i++){
+            if(i > 0){
+                emit(",");
+            }
+            distribute(items.get(i));
+        }
+    }
+
     private void indent(){
         indentLevel++;
     }
 
     private void dent(){
-        output += indent.repeat(indentLevel);
+        emit(indent.repeat(indentLevel));
     }
 
     private void dedent(){
@@ -70,345 +120,672 @@ public class Generator {
         
     }
 
-    public <T> void distribute(T node) {
+    public void distribute(Node node) {
         if(node == null) return;
-        switch(node.getClass().getSimpleName()){
-            case "Program" -> Program((Program) node);
-            case "ImportDec" -> ImportDec((ImportDec) node);
-            case "DefinitionsDec" -> DefinitionsDec((DefinitionsDec) node);
-            case "VariableDec" -> VariableDec((VariableDec) node);
-            case "Assignment" -> Assignment((Assignment) node);
-            case "FunctionDec" -> FunctionDec((FunctionDec) node);
-            case "ParameterDec" -> ParameterDec((ParameterDec) node);
-            case "PrototypeDec" -> PrototypeDec((PrototypeDec) node);
-            case "AttributeDec" -> AttributeDec((AttributeDec) node);
-            case "MethodDec" -> MethodDec((MethodDec) node);
-            case "ConstructorDec" -> ConstructorDec((ConstructorDec) node);
-            case "IfStatement" -> IfStatement((IfStatement) node);
-            case "WhileStatement" -> WhileStatement((WhileStatement) node);
-            case "ForStatement" -> ForStatement((ForStatement) node);
-            case "ReturnStatement" -> ReturnStatement((ReturnStatement) node);
-            case "ContinueStatement" -> ContinueStatement((ContinueStatement) node);
-            case "BreakStatement" -> BreakStatement((BreakStatement) node);
-            case "ExpressionStatement" -> ExpressionStatement((ExpressionStatement) node);
-            case "RationalLiteral" -> RationalLiteral((RationalLiteral) node);
-            case "IntegerLiteral" -> IntegerLiteral((IntegerLiteral) node);
-            case "BooleanLiteral" -> BooleanLiteral((BooleanLiteral) node);
-            case "StringLiteral" -> StringLiteral((StringLiteral) node);
-            case "SelfLiteral" -> SelfLiteral((SelfLiteral) node);
-            case "DoesNotExistLiteral" -> DoesNotExistLiteral((DoesNotExistLiteral) node);
-            case "PrototypeLiteral" -> PrototypeLiteral((PrototypeLiteral) node);
-            case "IdentifierLiteral" -> IdentifierLiteral((IdentifierLiteral) node);
-            case "ListLiteral" -> ListLiteral((ListLiteral) node);
-            case "MapLiteral" -> MapLiteral((MapLiteral) node);
-            case "KeyValuePair" -> KeyValuePair((KeyValuePair) node);
-            case "BinaryExpression" -> BinaryExpression((BinaryExpression) node);
-            case "UnaryExpression" -> UnaryExpression((UnaryExpression) node);
-            case "IndexExpression" -> IndexExpression((IndexExpression) node);
-            case "CallExpression" -> CallExpression((CallExpression) node);
-            case "AccessExpression" -> AccessExpression((AccessExpression) node);
-            default -> throw new IllegalArgumentException("Unsupported object type: " + node.getClass().getName());
-        }
+        node.accept(this);
     }
 
-    private void Program(Program p) {
-        output += "package src;\njava.util.*;\n";
+    @Override
+    public Void visit(Program p) {
+        emit("package src;\nimport java.util.*;\nimport JavaCompiler.*;\n");
         p.imports().ifPresent(a -> a.forEach(i -> distribute(i)));
-        output += "class Start {\n";
-        indent();
+        emit("class Start {\n");
+        p.definition().ifPresent(d -> distribute(d));
         dent();
-        output += "static{\n";
+        emit("public static void main(String[] args){\n");
         indent();
-        p.definition().ifPresent(d -> distribute(d));
-        dedent();
         dent();
-        output += "}\n";
+        emit("Scheduler $scheduler = Scheduler.start(args);\n");
+        dent();
+        emit("Object INPUT = PlumbRuntime.input($scheduler.input());\n");
+        p.pipeline().ifPresent(l -> distribute(l));
         dedent();
-        output += "public static void main(String[] args){\n";
-        //p.pipeline().ifPresent(l -> distribute(l));
-        output += "}\n}";
-    }
-    
-    private void ImportDec(ImportDec i) {
-        output += "import " + i.path().replaceAll("/", ".").replaceAll("\"", "") + ".*;\n";
+        dent();
+        emit("}\n}");
+        return null;
     }
 
-    private void DefinitionsDec(DefinitionsDec d) {
-        d.statements().ifPresent(s -> s.forEach(i -> distribute(i)));
+    @Override
+    public Void visit(ImportDec i) {
+        emit("import " + i.path().replaceAll("/", ".").replaceAll("\"", "") + ".*;\n");
+        return null;
+    }
+
+    /*
+     * Declarations at the top of the block become members of Start, so main and the pipes can
+     * reach them: variables are static fields, FUNCs static methods and PROTOs static classes.
+     * Runs of the other statements go into static blocks in between, and as Java initializes
+     * fields and runs static blocks in the order they are written, everything still happens in
+     * the order of the source.
+     */
+    @Override
+    public Void visit(DefinitionsDec d) {
+        List<Statement> statements = d.statements().orElse(new ArrayList<Statement>());
+        for(Statement statement : statements){
+            if(statement instanceof FunctionDec f){
+                functions.put(f.identifier(), f);
+            } else if(statement instanceof PrototypeDec proto){
+                prototypes.put(proto.identifier(), proto);
+            }
+        }
+        boolean inBlock = false;
+        for(Statement statement : statements){
+            boolean member = statement instanceof VariableDec || statement instanceof FunctionDec || statement instanceof PrototypeDec;
+            if(member && inBlock){
+                dedent();
+                dent();
+                emit("}\n");
+            } else if(!member && !inBlock){
+                dent();
+                emit("static {\n");
+                indent();
+            }
+            inBlock = !member;
+            if(statement instanceof VariableDec v){
+                dent();
+                emit("static ");
+                VariableClause(v);
+                emit(";\n");
+            } else {
+                topLevel = member;
+                distribute(statement);
+                topLevel = false;
+            }
+        }
+        if(inBlock){
+            dedent();
+            dent();
+            emit("}\n");
+        }
+        return null;
     }
 
-    private void VariableDec(VariableDec v) {
+    @Override
+    public Void visit(VariableDec v) {
         dent();
-        output += prototypeToClass(v.type()) + " ";
-        output += v.identifier() + " ";
-        output += opMap.get(v.assignmentOperator()) + " ";
-        distribute(v.expression());
-        output += ";\n";
+        VariableClause(v);
+        emit(";\n");
+        return null;
+    }
+
+    // A declaration without its indent and terminator, as it also opens a for loop
+    private void VariableClause(VariableDec v) {
+        emit(prototypeToClass(v.type()) + " ");
+        emit(v.identifier() + " ");
+        emit(opMap.get(v.assignmentOperator()) + " ");
+        initializer(v.type(), v.expression());
+    }
+
+    // RAT is a Float, which Java will not take an int for, so anything but a RAT literal is converted like the bytecode backend does
+    private void initializer(Prototype type, Expression expression) {
+        if(type.equals(BasePrototype.RAT) && !(expression instanceof RationalLiteral)){
+            emit("(Float) PlumbRuntime.cast(");
+            distribute(expression);
+            emit(",\"" + BasePrototype.RAT.name() + "\")");
+        } else {
+            distribute(expression);
+        }
     }
 
-    private void Assignment(Assignment a) {
+    @Override
+    public Void visit(Assignment a) {
         dent();
-        output += a.identifier() + " ";
-        output += opMap.get(a.assignmentOperator()) + " ";
+        AssignmentClause(a);
+        emit(";\n");
+        return null;
+    }
+
+    private void AssignmentClause(Assignment a) {
+        emit((a.self() ? "this." : "") + a.identifier() + " ");
+        emit(opMap.get(a.assignmentOperator()) + " ");
         distribute(a.expression());
-        output += ";\n";
     }
 
-    private void FunctionDec(FunctionDec f) {
+    @Override
+    public Void visit(FunctionDec f) {
+        boolean member = topLevel;
+        topLevel = false;
         dent();
-        output += "private ";
-        output += prototypeToClass(f.returnType()) + " ";
-        output += f.identifier() + "(";
-        for (var param: f.parameters()){
-            distribute(param);
-            output += ",";
-        }
-        output = output.substring(0, output.length() - 1);
-        output += ") {\n";
+        emit(member ? "private static " : "private ");
+        emit(prototypeToClass(f.returnType()) + " ");
+        emit(f.identifier() + "(");
+        commaSeparated(f.parameters());
+        emit(") {\n");
         indent();
         f.statements().forEach(s -> distribute(s));
         dedent();
         dent();
-        output += "}\n";
+        emit("}\n");
+        return null;
     }
 
-    private void ParameterDec(ParameterDec p) {
-        output += prototypeToClass(p.type()) + " " + p.identifier();
+    @Override
+    public Void visit(ParameterDec p) {
+        emit(prototypeToClass(p.type()) + " " + p.identifier());
+        return null;
     }
 
-    private void PrototypeDec(PrototypeDec p) {
+    @Override
+    public Void visit(PrototypeDec p) {
+        boolean member = topLevel;
+        topLevel = false;
         dent();
-        output += "class ";
-        output += p.identifier() + " ";
-        output += "{\n";
+        emit(member ? "static class " : "class ");
+        emit(p.identifier() + " ");
+        emit("{\n");
         indent();
         p.statements().forEach(s -> distribute(s));
         dedent();
         dent();
-        output += "}\n";
+        emit("}\n");
+        return null;
     }
 
-    private void AttributeDec(AttributeDec a) {
+    @Override
+    public Void visit(AttributeDec a) {
         dent();
-        output += prototypeToClass(a.type()) + " ";
-        output += a.identifier() + " ";
-        a.assignmentOperator().ifPresent(op -> output += opMap.get(op) + " ");
-        a.expression().ifPresent(e -> distribute(e));
-        output += ";\n";
+        emit(prototypeToClass(a.type()) + " ");
+        emit(a.identifier() + " ");
+        a.assignmentOperator().ifPresent(op -> emit(opMap.get(op) + " "));
+        a.expression().ifPresent(e -> initializer(a.type(), e));
+        emit(";\n");
+        return null;
     }
 
-    private void MethodDec(MethodDec m) {
+    @Override
+    public Void visit(MethodDec m) {
         dent();
-        output += "private ";
-        output += prototypeToClass(m.returnType()) + " ";
-        output += m.identifier() + "(";
-        for (var param: m.parameters()){
-            distribute(param);
-            output += ",";
-        }
-        output = output.substring(0, output.length() - 1);
-        output += ") {\n";
+        emit("private ");
+        emit(prototypeToClass(m.returnType()) + " ");
+        emit(m.identifier() + "(");
+        commaSeparated(m.parameters());
+        emit(") {\n");
         indent();
         m.statements().forEach(s -> distribute(s));
         dedent();
         dent();
-        output += "}\n";
+        emit("}\n");
+        return null;
     }
 
-    private void ConstructorDec(ConstructorDec c) {
+    @Override
+    public Void visit(ConstructorDec c) {
         dent();
-        output += prototypeToClass(c.parent()) + "(";
-        for (var param: c.parameters()){
-            distribute(param);
-            output += ",";
-        }
-        output = output.substring(0, output.length() - 1);
-        output += ") {\n";
+        emit(prototypeToClass(c.parent()) + "(");
+        commaSeparated(c.parameters());
+        emit(") {\n");
         indent();
         c.statements().forEach(s -> distribute(s));
         dedent();
         dent();
-        output += "}\n";
+        emit("}\n");
+        return null;
     }
 
-    private void IfStatement(IfStatement i) {
+    @Override
+    public Void visit(IfStatement i) {
         dent();
-        output += "if(";
+        emit("if(");
         distribute(i.condition());
-        output += ") {\n";
+        emit(") {\n");
         indent();
         i.statements().forEach(s -> distribute(s));
         dedent();
         dent();
-        output += "}\n";
+        emit("}\n");
+        return null;
     }
 
-    private void WhileStatement(WhileStatement w) {
+    @Override
+    public Void visit(WhileStatement w) {
         dent();
-        output += "while(";
+        emit("while(");
         distribute(w.condition());
-        output += ") {\n";
+        emit(") {\n");
         indent();
         w.statements().forEach(s -> distribute(s));
         dedent();
         dent();
-        output += "}\n";
+        emit("}\n");
+        return null;
     }
 
-    private void ForStatement(ForStatement f) {
+    @Override
+    public Void visit(ForStatement f) {
         dent();
-        output += "for(";
-        dedent();
-        distribute(f.assignment());
-        output = output.substring(0, output.length() - 1);
+        emit("for(");
+        ForClause(f.assignment());
+        emit(";");
         distribute(f.condition());
-        output = output.substring(0, output.length() - 1);
-        output += ";";
-        distribute(f.iteration());
-        output = output.substring(0, output.length() - 1);
-        output += ") {\n";
+        emit(";");
+        ForClause(f.iteration());
+        emit(") {\n");
         indent();
         f.statements().forEach(s -> distribute(s));
         dedent();
         dent();
-        output += "}\n";
+        emit("}\n");
+        return null;
+    }
+
+    private void ForClause(Statement s) {
+        if(s instanceof VariableDec v){
+            VariableClause(v);
+        } else if(s instanceof Assignment a){
+            AssignmentClause(a);
+        } else {
+            distribute(s);
+        }
     }
 
-    private void ReturnStatement(ReturnStatement r) {
+    @Override
+    public Void visit(ReturnStatement r) {
         dent();
-        output += "return ";
+        emit("return ");
         r.expression().ifPresent(e -> distribute(e));
-        output += ";\n";
+        emit(";\n");
+        return null;
     }
 
-    private void ContinueStatement(ContinueStatement c) {
+    @Override
+    public Void visit(ContinueStatement c) {
         dent();
-        output += "continue;\n";
+        emit("continue;\n");
+        return null;
     }
 
-    private void BreakStatement(BreakStatement b) {
+    @Override
+    public Void visit(BreakStatement b) {
         dent();
-        output += "break;\n";
+        emit("break;\n");
+        return null;
     }
 
-    private void ExpressionStatement(ExpressionStatement e) {
+    @Override
+    public Void visit(ExpressionStatement e) {
         dent();
         distribute(e.expression());
-        output += ";\n";
+        emit(";\n");
+        return null;
     }
 
-    private void RationalLiteral(RationalLiteral r) {
-        output += r.value().toString().contains(".")? r.value() : r.value() + ".0";
+    @Override
+    public Void visit(RationalLiteral r) {
+        // RAT is a Float, and a literal without the suffix would be a double
+        emit(r.value() + "f");
+        return null;
     }
 
-    private void IntegerLiteral(IntegerLiteral i) {
-        output += i.value();
+    @Override
+    public Void visit(IntegerLiteral i) {
+        emit(i.value());
+        return null;
     }
 
-    private void BooleanLiteral(BooleanLiteral b) {
-        output += b.value();
+    @Override
+    public Void visit(BooleanLiteral b) {
+        emit(b.value());
+        return null;
     }
 
-    private void StringLiteral(StringLiteral s) {
-        output += "\"" + s.value() + "\"";
+    @Override
+    public Void visit(StringLiteral s) {
+        emit("\"" + s.value() + "\"");
+        return null;
     }
 
-    private void SelfLiteral(SelfLiteral s) {
-        output += "this";
+    @Override
+    public Void visit(SelfLiteral s) {
+        emit("this");
+        return null;
     }
 
-    private void DoesNotExistLiteral(DoesNotExistLiteral d) {
-        output += "null";
+    @Override
+    public Void visit(DoesNotExistLiteral d) {
+        emit("null");
+        return null;
     }
 
-    private void PrototypeLiteral(PrototypeLiteral p) {
-        output += "new " + p.value();
+    @Override
+    public Void visit(PrototypeLiteral p) {
+        // INPUT is a variable of main, not a PROTO
+        emit(prototypes.containsKey(p.value()) ? "new " + p.value() : p.value());
+        return null;
     }
 
-    private void IdentifierLiteral(IdentifierLiteral i) {
-        output += i.value();
+    @Override
+    public Void visit(IdentifierLiteral i) {
+        emit(i.value());
+        return null;
     }
 
-    private void ListLiteral(ListLiteral l) {
-        output += "List.of(new ";
-        output += l.type() + "[]{";
-        for(var item: l.contents()){
-            distribute(item);
-            output += ",";
-        }
-        output = output.substring(0, output.length() - 1);
-        output += "})";
-    }
-
-    private void MapLiteral(MapLiteral m) {
-        output += "Map.ofEntries(";
-        for(var item: m.contents()){
-            output += "new AbstractMap.SimpleEntry<String,";
-            output += m.type() + ">(";
-            distribute(item);
-            output += ")";
-            output += ",";
+    @Override
+    public Void visit(ListLiteral l) {
+        // Plumb lists grow and may hold DNE, which List.of allows neither of
+        emit("new ArrayList<>(Arrays.asList(");
+        commaSeparated(l.contents());
+        emit("))");
+        return null;
+    }
+
+    @Override
+    public Void visit(MapLiteral m) {
+        emit("Map.ofEntries(");
+        for(int i = 0; i < m.contents().size(); i++){
+            if(i > 0){
+                emit(",");
+            }
+            emit("new AbstractMap.SimpleEntry<String,");
+            emit(m.type() + ">(");
+            distribute(m.contents().get(i));
+            emit(")");
         }
-        output = output.substring(0, output.length() - 1);
-        output += ")";
+        emit(")");
+        return null;
     }
 
-    private void KeyValuePair(KeyValuePair k) {
+    @Override
+    public Void visit(KeyValuePair k) {
         distribute(k.key());
-        output += ",";
+        emit(",");
         distribute(k.value());
+        return null;
     }
 
-    private void BinaryExpression(BinaryExpression b) {
-        if(b.operator() == "^"){
-            output += "Math.pow(";
+    // Every operand is parenthesized, the tree already has the precedence the source was written with
+    @Override
+    public Void visit(BinaryExpression b) {
+        if(b.operator().equals("^")){
+            emit("PlumbRuntime.pow((");
             distribute(b.left());
-            output += ",";
+            emit("),(");
             distribute(b.right());
-            output += ")";
-            return;
+            emit("))");
         } else {
+            emit("(");
             distribute(b.left());
-            output += " " + opMap.get(b.operator()) + " ";
+            emit(") " + opMap.get(b.operator()) + " (");
             distribute(b.right());
+            emit(")");
         }
+        return null;
     }
 
-    private void UnaryExpression(UnaryExpression u) {
-        output += opMap.get(u.operator());
+    @Override
+    public Void visit(UnaryExpression u) {
+        emit(opMap.get(u.operator()) + "(");
         distribute(u.right());
+        emit(")");
+        return null;
     }
 
-    private void IndexExpression(IndexExpression i) {
+    @Override
+    public Void visit(IndexExpression i) {
         distribute(i.object());
-        output += "[";
+        emit("[");
         distribute(i.index());
-        output += "]";
+        emit("]");
+        return null;
     }
 
-    private void CallExpression(CallExpression c) {
-        distribute(c.function());
-        output += "(";
-        for(var arg: c.arguments()){
-            distribute(arg);
-            output += ",";
+    // Builtins go through PlumbRuntime, like they do in a pipe
+    @Override
+    public Void visit(CallExpression c) {
+        if(c.function() instanceof IdentifierLiteral i && i.value().equals("print") && !functions.containsKey("print")){
+            emit("PlumbRuntime.print(new Object[]{");
+            commaSeparated(c.arguments());
+            emit("})");
+            return null;
         }
-        output = output.substring(0, output.length() - 1);
-        output += ")";
+        distribute(c.function());
+        emit("(");
+        commaSeparated(c.arguments());
+        emit(")");
+        return null;
     }
 
-    private void AccessExpression(AccessExpression a) {
+    @Override
+    public Void visit(AccessExpression a) {
         distribute(a.object());
-        output += ".";
-        a.attribute();
+        emit(".");
+        emit(a.attribute());
+        return null;
+    }
+
+    /* Pipe Section */
+
+    // Every pipe is a task of its own, and the Scheduler main started runs them all at once
+    @Override
+    public Void visit(PipelinesDec p) {
+        PipelineGraph graph = PipelineGraph.of(p);
+        dent();
+        emit("$scheduler.run(");
+        indent();
+        for(int i = 0; i < p.pipes().size(); i++){
+            emit(i > 0 ? ",\n" : "\n");
+            dent();
+            emit("() -> {\n");
+            indent();
+            pipe(graph, i);
+            dedent();
+            dent();
+            emit("}");
+        }
+        dedent();
+        emit("\n");
+        dent();
+        emit(");\n");
+        return null;
+    }
+
+    @Override
+    public Void visit(PipeExpression p) {
+        throw new IllegalArgumentException("Unsupported object type: " + p.getClass().getName());
+    }
+
+    /*
+     * A pipe streams through Pipes.stream, with a stage for every segment the pipeline graph
+     * fuses its operators into. A stage takes the values of one item as an array, runs them
+     * through every operator of its segment in turn and returns the values it hands on.
+     */
+    private void pipe(PipelineGraph graph, int pipe){
+        temporaries = 0;
+        ArrayList<String> inputs = new ArrayList<String>();
+        for(Expression input : graph.node(graph.sources().get(pipe)).receivers()){
+            inputs.add(temporary());
+            distribute(input);
+            emit(";\n");
+        }
+        dent();
+        emit("Pipes.stream(new Object[]{" + String.join(",", inputs) + "}");
+        indent();
+        int count = inputs.size();
+        // The names a factory's receivers give its instance, bound at the start of the stage after it
+        List<String> names = null;
+        for(PipelineGraph.Segment segment : graph.fuse(pipe, this::cost)){
+            emit(",\n");
+            dent();
+            if(segment.factory(graph)){
+                emit("Pipes.factory()");
+                names = graph.node(segment.nodes().get(0)).receivers().stream().map(PipelineGraph::receiverName).toList();
+                count = 1;
+                continue;
+            }
+            String item = "$" + temporaries++;
+            emit((segment.parallel() ? "Pipes.parallel(" : "Pipes.map(") + item + " -> {\n");
+            indent();
+            List<String> values = new ArrayList<String>();
+            if(names != null){
+                for(String name : names){
+                    dent();
+                    emit("Object " + name + " = " + item + "[0];\n");
+                    values.add(name);
+                }
+            } else {
+                for(int i = 0; i < count; i++){
+                    values.add(item + "[" + i + "]");
+                }
+            }
+            for(int id : segment.nodes()){
+                values = PipelineGraph.stage(graph.node(id), values, stages);
+            }
+            dent();
+            emit("return new Object[]{" + String.join(",", values) + "};\n");
+            dedent();
+            dent();
+            emit("})");
+            count = values.size();
+            names = null;
+        }
+        dedent();
+        emit("\n");
+        dent();
+        emit(");\n");
+    }
+
+    /*
+     * Builtins like print do I/O, and so does anything that calls one, or calls something the
+     * program does not declare, however far down the calls go: those block, and their stage
+     * keeps its order. Any other FUNC or PROTO is expensive when it loops or calls anything,
+     * which is found by scanning its flat tree, and cheap otherwise.
+     */
+    private PipelineGraph.Cost cost(String receiver){
+        if(!functions.containsKey(receiver) && !prototypes.containsKey(receiver)){
+            return PipelineGraph.Cost.BLOCKING;
+        }
+        PipelineGraph.Cost cost = PipelineGraph.Cost.CHEAP;
+        HashSet<String> seen = new HashSet<String>(List.of(receiver));
+        ArrayDeque<String> pending = new ArrayDeque<String>(seen);
+        while(!pending.isEmpty()){
+            FlatTree tree = body(pending.poll());
+            for(int node = 0; node < tree.size(); node++){
+                FlatTree.Kind kind = tree.kind(node);
+                if(kind == FlatTree.Kind.WHILE || kind == FlatTree.Kind.FOR){
+                    cost = PipelineGraph.Cost.EXPENSIVE;
+                } else if(kind == FlatTree.Kind.CALL){
+                    cost = PipelineGraph.Cost.EXPENSIVE;
+                    // Methods are called on whatever an expression gives, so there is no telling what they do
+                    int callee = tree.child(node, 0);
+                    FlatTree.Kind calleeKind = tree.kind(callee);
+                    String name = calleeKind == FlatTree.Kind.IDENTIFIER || calleeKind == FlatTree.Kind.PROTOTYPE_LITERAL ? tree.string(callee, 0) : null;
+                    if(name == null || (!functions.containsKey(name) && !prototypes.containsKey(name))){
+                        return PipelineGraph.Cost.BLOCKING;
+                    } else if(seen.add(name)){
+                        pending.add(name);
+                    }
+                }
+            }
+        }
+        return cost;
+    }
+
+    // The declaration of a FUNC, or the constructors of a PROTO, as a flat tree
+    private FlatTree body(String receiver){
+        ArrayList<Statement> body;
+        if(functions.containsKey(receiver)){
+            body = new ArrayList<Statement>(List.of(functions.get(receiver)));
+        } else {
+            body = new ArrayList<Statement>(constructors(prototypes.get(receiver)));
+        }
+        return FlatTree.of(new Program(Optional.empty(), Optional.of(new DefinitionsDec(Optional.of(body))), Optional.empty()));
+    }
+
+    // Declares the next temporary of the pipe, to be assigned what is emitted after it
+    private String temporary(){
+        String name = "$" + temporaries++;
+        dent();
+        emit("Object " + name + " = ");
+        return name;
+    }
+
+    // Each step of a stage goes into a temporary of its own, named by the value it holds
+    private final PipelineGraph.Target<String> stages = new PipelineGraph.Target<String>() {
+        @Override
+        public String cast(String value, String type){
+            String name = temporary();
+            emit("PlumbRuntime.cast(" + value + ",\"" + type + "\");\n");
+            return name;
+        }
+
+        @Override
+        public String attribute(String instance, String attribute){
+            String name = temporary();
+            emit("PlumbRuntime.attribute(" + instance + ",\"" + attribute + "\");\n");
+            return name;
+        }
+
+        @Override
+        public String call(String receiver, List<String> arguments){
+            String name = temporary();
+            Generator.this.call(receiver, arguments);
+            return name;
+        }
+
+        @Override
+        public int arity(String receiver){
+            return Generator.this.arity(receiver);
+        }
+    };
+
+    // How many arguments receiver takes, -1 for any number
+    private int arity(String receiver){
+        if(functions.containsKey(receiver)){
+            return functions.get(receiver).parameters().size();
+        } else if(prototypes.containsKey(receiver)){
+            List<ConstructorDec> constructors = constructors(prototypes.get(receiver));
+            return constructors.isEmpty() ? 0 : constructors.size() == 1 ? constructors.get(0).parameters().size() : -1;
+        }
+        return -1;
+    }
+
+    private static List<ConstructorDec> constructors(PrototypeDec p){
+        return p.statements().stream().filter(s -> s instanceof ConstructorDec).map(s -> (ConstructorDec) s).toList();
+    }
+
+    // Calls receiver with values, each converted to the type its parameter declares
+    private void call(String receiver, List<String> values){
+        List<ParameterDec> parameters = null;
+        if(functions.containsKey(receiver)){
+            emit(receiver + "(");
+            parameters = functions.get(receiver).parameters();
+        } else if(prototypes.containsKey(receiver)){
+            emit("new " + receiver + "(");
+            parameters = constructors(prototypes.get(receiver)).stream()
+                .filter(c -> c.parameters().size() == values.size())
+                .findFirst().map(ConstructorDec::parameters).orElse(null);
+        } else if(receiver.equals("print")){
+            emit("PlumbRuntime.print(new Object[]{" + String.join(",", values) + "});\n");
+            return;
+        } else {
+            emit(receiver + "(");
+        }
+        for(int i = 0; i < values.size(); i++){
+            emit(i > 0 ? "," : "");
+            emit(parameters == null ? values.get(i) : argument(parameters.get(i).type(), values.get(i)));
+        }
+        emit(");\n");
+    }
+
+    // value, an Object, as the declared type; base types are converted rather than just cast
+    private String argument(Prototype type, String value){
+        if(type instanceof BasePrototype b && convertible.contains(b)){
+            return "(" + prototypeToClass(b) + ") PlumbRuntime.cast(" + value + ",\"" + b.name() + "\")";
+        }
+        return "(" + prototypeToClass(type) + ") " + value;
     }
 
+
     @Override
     public String toString(){
-        return this.output;
+        return this.output.toString();
     }
 
-    public static void main(String[] args) throws UnexpectedMatchException {
+    public static void main(String[] args) throws UnexpectedMatchException, IOException {
+        if(args.length > 0){
+            new Generator(new Parser(new Lexer(Path.of(args[0]))).root, System.out);
+            System.out.println();
+            return;
+        }
         String program = """
             ::::
 
@@ -491,7 +868,7 @@ public class Generator {
                 """;
         Lexer croccy = new Lexer(program);
         
-        Parser chompy = new Parser(croccy.tokens);
+        Parser chompy = new Parser(croccy);
 
         Generator Jergen = new Generator(chompy.root);
 
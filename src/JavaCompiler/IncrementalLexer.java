@@ -0,0 +1,72 @@
+package JavaCompiler;
+
+/*
+ * Re-lexes a source after an edit by patching the token table of the text before it in
+ * place. Lexing restarts just after the last newline token in front of the edit, as a newline
+ * token is only ever emitted outside of comments and no token looks past the end of its own
+ * line. It stops again as soon as a new token starts exactly where an old token past the edit
+ * started: both scans are between tokens there and see the same text from then on, so the
+ * rest of the old table stays as it is. The table keeps the tokens behind its gap relative to
+ * the end of the source, and so do the source text and the line index, so the cost of an edit
+ * is the re-lexed span plus the distance the gaps move from the previous edit, not the size of
+ * the file.
+ */
+class IncrementalLexer {
+
+    // Edits the table's own source, which is copied into a SourceBuffer on the first edit only
+    static void edit(TokenTable tokens, int offset, int removed, String inserted){
+        SourceBuffer buffer = tokens.source() instanceof SourceBuffer source ? source : new SourceBuffer(tokens.source());
+        buffer.replace(offset, removed, inserted);
+        edit(tokens, buffer, offset, removed, inserted.length());
+    }
+
+    // For callers that already hold the edited text, such as an editor buffer
+    static void edit(TokenTable tokens, CharSequence updated, int offset, int removed, int inserted){
+        int kept = lastNewlineBefore(tokens, offset) + 1;
+        int restart = kept == 0 ? 0 : tokens.end(kept - 1);
+        tokens.moveGap(kept);
+        tokens.retarget(updated, offset, removed, inserted);
+
+        // Old tokens behind the gap now report their start moved by the length change
+        Lexer lexer = new Lexer(updated, restart, updated.length(), false);
+        int editEnd = offset + inserted;
+        while(lexer.scanInto(tokens)){
+            int start = tokens.start(tokens.gap() - 1);
+            while(tokens.gap() < tokens.size() && tokens.start(tokens.gap()) < start){
+                tokens.removeAfterGap();
+            }
+            if(start >= editEnd && tokens.gap() < tokens.size() && tokens.start(tokens.gap()) == start){
+                tokens.removeBeforeGap();
+                tokens.changed(kept, tokens.size() - tokens.gap());
+                return;
+            }
+        }
+        while(tokens.gap() < tokens.size()){
+            tokens.removeAfterGap();
+        }
+        tokens.changed(kept, 0);
+    }
+
+    // Index of the last newline token that ends at or before offset, -1 if there is none
+    private static int lastNewlineBefore(TokenTable table, int offset){
+        int low = 0;
+        int high = table.size() - 1;
+        int before = -1;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            if(table.end(middle) <= offset){
+                before = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        while(before >= 0 && !(table.symbol(before) == NEWLINE && table.end(before) > table.start(before))){
+            before--;
+        }
+        return before;
+    }
+
+    private static final int NEWLINE = TokenTable.symbol("\n");
+
+}
@@ -0,0 +1,174 @@
+package JavaCompiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import JavaCompiler.Core.*;
+
+/*
+ * Parses the same token table over and over as IncrementalLexer edits it. The top level
+ * statements of the Definitions block are kept between parses along with the tokens they were
+ * parsed from. The table knows how many tokens at its front and back no edit has touched since
+ * the last parse, and a statement whose tokens all lie in one of those is made of the very same
+ * tokens as before, so the reparse hands back the very same record without looking at them.
+ * Runs of such statements are taken over whole, so a reparse costs the statements around the
+ * edit, not the size of the block. Statements are never matched on anything weaker than that,
+ * so a different statement can never be mistaken for a kept one.
+ *
+ * Kept statements hold on to their canonical prototypes and literals, so parses share an
+ * interner, but an editor session types ever new literals into it. Every statement kept
+ * remembers what it was handed, and once the interner has grown to twice what it held after
+ * the last rebuild it is rebuilt from what the kept statements still use.
+ */
+class IncrementalParser {
+
+    // Slack on top of twice the live entries before the interner is rebuilt, so small programs never bother
+    private static final int REBUILD_SLACK = 4096;
+
+    private Interner interner = new Interner();
+    // Entries in the interner when it was last rebuilt
+    private int live = 0;
+
+    // The table of the last parse that went through, and how many tokens it had then
+    private TokenTable table;
+    private int size;
+    private Spans previous = new Spans();
+    private Spans current = new Spans();
+
+    Program parse(TokenTable tokens) throws Parser.UnexpectedMatchException {
+        Program program;
+        try {
+            program = new Parser(tokens, this).root;
+        } catch (Parser.UnexpectedMatchException e){
+            // Nothing is kept from a parse that failed, the next one starts from the last that didn't
+            current = new Spans();
+            throw e;
+        }
+        previous = current;
+        current = new Spans();
+        table = tokens;
+        size = tokens.size();
+        tokens.markUnchanged();
+        if(interner.size() > 2 * live + REBUILD_SLACK){
+            rebuild();
+        }
+        return program;
+    }
+
+    Interner interner(){
+        return interner;
+    }
+
+    // Parses after this one see the same instances for what the kept statements use, and nothing else
+    private void rebuild(){
+        Interner rebuilt = new Interner();
+        for(int i = 0; i < previous.count; i++){
+            for(Object canonical : previous.interned[i]){
+                rebuilt.adopt(canonical);
+            }
+        }
+        interner = rebuilt;
+        live = rebuilt.size();
+    }
+
+    /*
+     * Adds the kept statements from cursor on to into for as long as their tokens are
+     * untouched and nothing but newlines lies between them. Returns where the parse goes on,
+     * or -1 if no kept statement starts at cursor.
+     */
+    int reuse(TokenTable tokens, int cursor, ArrayList<Statement> into){
+        if(tokens != table || previous.count == 0){
+            return -1;
+        }
+        int shift = tokens.size() - size;
+        boolean back = cursor >= tokens.size() - tokens.unchangedSuffix();
+        // Untouched tokens at the back moved with the length change, those at the front stayed
+        int from = previous.find(back ? cursor - shift : cursor);
+        if(from < 0){
+            return -1;
+        }
+        if(!back){
+            shift = 0;
+        }
+        int limit = back ? Integer.MAX_VALUE : tokens.unchangedPrefix();
+        int to = from;
+        while(to < previous.count && previous.ends[to] <= limit
+                && (to == from || onlyNewlines(tokens, previous.ends[to - 1] + shift, previous.starts[to] + shift))){
+            to++;
+        }
+        if(to == from){
+            return -1;
+        }
+        into.addAll(Arrays.asList(previous.statements).subList(from, to));
+        current.addAll(previous, from, to, shift);
+        return previous.ends[to - 1] + shift;
+    }
+
+    // Keeps a statement parsed from the tokens [start, end), which was handed interned, for the next parse
+    void remember(int start, int end, Statement statement, Object[] interned){
+        current.add(start, end, statement, interned);
+    }
+
+    private static boolean onlyNewlines(TokenTable tokens, int from, int to){
+        for(int i = from; i < to; i++){
+            if(tokens.symbol(i) != NEWLINE){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final int NEWLINE = TokenTable.symbol("\n");
+
+    // Kept statements in source order, column-wise like the token table
+    private static class Spans {
+        private int[] starts = new int[64];
+        private int[] ends = new int[64];
+        private Statement[] statements = new Statement[64];
+        private Object[][] interned = new Object[64][];
+        private int count = 0;
+
+        void add(int start, int end, Statement statement, Object[] handedOut){
+            ensureCapacity(count + 1);
+            starts[count] = start;
+            ends[count] = end;
+            statements[count] = statement;
+            interned[count] = handedOut;
+            count++;
+        }
+
+        // Copies spans [from, to) of other over, with their tokens shift further on
+        void addAll(Spans other, int from, int to, int shift){
+            int added = to - from;
+            ensureCapacity(count + added);
+            System.arraycopy(other.starts, from, starts, count, added);
+            System.arraycopy(other.ends, from, ends, count, added);
+            System.arraycopy(other.statements, from, statements, count, added);
+            System.arraycopy(other.interned, from, interned, count, added);
+            if(shift != 0){
+                for(int i = count; i < count + added; i++){
+                    starts[i] += shift;
+                    ends[i] += shift;
+                }
+            }
+            count += added;
+        }
+
+        // The span starting at token start, -1 if none does
+        int find(int start){
+            int found = Arrays.binarySearch(starts, 0, count, start);
+            return found < 0 ? -1 : found;
+        }
+
+        private void ensureCapacity(int capacity){
+            if(capacity > starts.length){
+                int grown = Math.max(capacity, starts.length * 2);
+                starts = Arrays.copyOf(starts, grown);
+                ends = Arrays.copyOf(ends, grown);
+                statements = Arrays.copyOf(statements, grown);
+                interned = Arrays.copyOf(interned, grown);
+            }
+        }
+    }
+
+}
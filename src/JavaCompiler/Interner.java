@@ -0,0 +1,83 @@
+package JavaCompiler;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import JavaCompiler.Core.*;
+
+/*
+ * Canonical instances for one compilation. Every prototype is handed out once, so two
+ * prototypes are the same type exactly when they are the same object, and equal literals and
+ * identifiers share a single node however often the source spells them. The maps are
+ * concurrent as the parallel parser's workers all share the interner of their parser.
+ */
+class Interner {
+
+    private final ConcurrentHashMap<String, BasePrototype> bases = new ConcurrentHashMap<String, BasePrototype>();
+    private final ConcurrentHashMap<Prototype, ListPrototype> lists = new ConcurrentHashMap<Prototype, ListPrototype>();
+    private final ConcurrentHashMap<Prototype, MapPrototype> maps = new ConcurrentHashMap<Prototype, MapPrototype>();
+    private final ConcurrentHashMap<Expression, Expression> literals = new ConcurrentHashMap<Expression, Expression>();
+    // Where every instance handed out goes while it is set; only ever set by a single threaded parser
+    private ArrayList<Object> handedOut;
+
+    Interner(){
+        bases.put("INT", BasePrototype.INT);
+        bases.put("RAT", BasePrototype.RAT);
+        bases.put("STR", BasePrototype.STR);
+        bases.put("BOOL", BasePrototype.BOOL);
+        bases.put("DNE", BasePrototype.DNE);
+    }
+
+    // The prototype spelled name in the source
+    BasePrototype base(String name){
+        return handOut(bases.computeIfAbsent(name, BasePrototype::new));
+    }
+
+    // Inner has to be canonical already, so wrappers can be looked up by it
+    ListPrototype list(Prototype inner){
+        return handOut(lists.computeIfAbsent(inner, ListPrototype::new));
+    }
+
+    MapPrototype map(Prototype inner){
+        return handOut(maps.computeIfAbsent(inner, MapPrototype::new));
+    }
+
+    // Only for nodes without children, whose equality is the equality of their values
+    @SuppressWarnings("unchecked")
+    <T extends Expression> T literal(T node){
+        Expression canonical = literals.putIfAbsent(node, node);
+        return handOut(canonical == null ? node : (T) canonical);
+    }
+
+    // Collects what is handed out from now on into into, or stops when into is null
+    void record(ArrayList<Object> into){
+        handedOut = into;
+    }
+
+    private <T> T handOut(T canonical){
+        if(handedOut != null){
+            handedOut.add(canonical);
+        }
+        return canonical;
+    }
+
+    int size(){
+        return bases.size() + lists.size() + maps.size() + literals.size();
+    }
+
+    // Makes canonical, handed out by an earlier interner, the canonical instance here too
+    void adopt(Object canonical){
+        if(canonical instanceof BasePrototype base){
+            if(base != BasePrototype.INT && base != BasePrototype.RAT && base != BasePrototype.STR && base != BasePrototype.BOOL && base != BasePrototype.DNE){
+                bases.putIfAbsent(base.name(), base);
+            }
+        } else if(canonical instanceof ListPrototype list){
+            lists.putIfAbsent(list.inner(), list);
+        } else if(canonical instanceof MapPrototype map){
+            maps.putIfAbsent(map.inner(), map);
+        } else if(canonical instanceof Expression literal){
+            literals.putIfAbsent(literal, literal);
+        }
+    }
+
+}
@@ -1,107 +1,427 @@
 package JavaCompiler;
 
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.*;
-import java.util.stream.Stream;
+import java.util.stream.*;
 
 import JavaCompiler.Core.Token;
 
-class Lexer {
-
-    ArrayList<Token> tokens = new ArrayList<Token>();
-    ArrayList<Pattern> patternList = new ArrayList<Pattern>();
-
-    Pattern structurePattern = Pattern.compile("^[}{)(,:#\\[\\]]|^\\|\\||^<<|^>>");
-    Pattern whiteSpacePattern = Pattern.compile("^ |^\\t");
-    Pattern keywordPattern = Pattern.compile("^continue|^break|^self|^none|^all|^FUNC|^while|^for|^if|^return|^true|^false|^OP|^Definitions|^Pipelines|^import|^PROTO|^ATR");
-    //static Pattern literalPattern = Pattern.compile("\\d+(.\\d+)?([Ee][-+]?\\d+)?|\\\".*?\\\"|^[a-z][_\\w\\d]*|\\|\\|.*?\\|\\||<<.*?>>", 0);
-    Pattern prototypePattern = Pattern.compile("^[A-Z]+|^\\|\\|[A-Z]+\\|\\||^<<[A-Z]+>>");
-    Pattern integerRationalLiteralPattern = Pattern.compile("^\\d+(\\.\\d+)?([Ee][-+]?\\d+)?");
-    Pattern stringLiteralPattern = Pattern.compile("^\\\".*?\\\"");
-    Pattern idLiteralPattern = Pattern.compile("^[a-z][_\\w\\d]*");
-    //Pattern listLiteralPattern = Pattern.compile("^\\|\\|.*?\\|\\|");
-    //Pattern mapLiteralPattern = Pattern.compile("<<.*?>>");
-    Pattern operatorPattern = Pattern.compile("^--<\\(|^-(.+?-)+>|^-\\(.+?\\)->|^-->|^\\(.*?\\)|^<==|^<\\+\\+|^<--|^<\\*\\*|^<//|^<%%|^>=|^==|^!=|^<=|^!|^-|^\\^|^\\*|^/|^%|^\\+|^<|^>|^\\.|^and|^or");
-                    
-    Lexer(String program){
-        this.patternList.add(keywordPattern);
-        this.patternList.add(prototypePattern);
-        this.patternList.add(integerRationalLiteralPattern);
-        this.patternList.add(stringLiteralPattern);
-        this.patternList.add(idLiteralPattern);
-        //this.patternList.add(listLiteralPattern);
-        //this.patternList.add(mapLiteralPattern);
-        this.patternList.add(operatorPattern);
-        Integer lineNumber = 1;
-        
-        String commentlessProgram = Pattern.compile("::.*?::", 0x20).matcher(program).replaceAll("").trim();
-
-        for(String line : commentlessProgram.split("\n")) {
-            this.tokens.addAll(TokenizeLine(lineNumber++, line.trim()));
-        }
-    }
-
-    private List<Token> TokenizeLine(Integer lineNumber, String line){
-        ArrayList<Token> lineTokens = new ArrayList<Token>();
-
-        int totalLineLength = line.length();
-        for(int i = 0; i < totalLineLength;){
-            //System.out.println(line);
-            while(whiteSpacePattern.matcher(line).find()){
-                line = line.substring(1);
-                i++;
+class Lexer implements Iterator<Token> {
+
+    private static final int NEWLINE = structure("\n");
+    private static final int DOUBLE_BAR = structure("||");
+    private static final int DOUBLE_LESS = structure("<<");
+    private static final int DOUBLE_GREATER = structure(">>");
+    private static final int GREATER_EQUAL = operator(">=");
+    private static final int GREATER = operator(">");
+    private static final int EQUAL = operator("==");
+    private static final int NOT_EQUAL = operator("!=");
+    private static final int NOT = operator("!");
+    private static final int LESS_EQUAL = operator("<=");
+    private static final int LESS = operator("<");
+    private static final int INJECTION = operator("-->");
+    private static final int FACTORY = operator("--<(");
+    private static final int MINUS = operator("-");
+
+    private static final int[] characters = new int[128];
+    private static final int[] assignments = new int[128];
+    static {
+        for(char c : "{}(),:#[]".toCharArray()){
+            characters[c] = structure(String.valueOf(c));
+        }
+        for(char c : "^*/%+.".toCharArray()){
+            characters[c] = operator(String.valueOf(c));
+        }
+        for(char c : "=+-*/%".toCharArray()){
+            assignments[c] = operator("<" + c + c);
+        }
+    }
+
+    private static int structure(String lexeme){
+        return TokenTable.kind(TokenTable.STRUCTURE, TokenTable.symbol(lexeme));
+    }
+
+    private static int operator(String lexeme){
+        return TokenTable.kind(TokenTable.OPERATOR, TokenTable.symbol(lexeme));
+    }
+
+    /*
+     * Whole sources are scanned in place. A Reader only has a window of its source held in
+     * memory; tokens never cross a line, so the window is refilled until it holds the rest
+     * of the current line before each token. Offsets handed out are always from the start
+     * of the source, base is where the window currently begins.
+     */
+    private final Reader reader;
+    private CharSequence source;
+    private char[] window;
+    private int base = 0;
+    private int length = 0;
+    private int position = 0;
+    private int searched = 0;
+    private boolean exhausted = false;
+    private LineIndex lines;
+
+    private boolean atLineEnd = false;
+    private boolean finished = false;
+    private boolean scanned = false;
+    private boolean partial = false;
+
+    // The token scanned last, valid while scanned is set
+    private int kind;
+    private int tokenStart;
+    private int tokenEnd;
+
+    Lexer(Reader reader){
+        this.reader = reader;
+        this.window = new char[8192];
+        this.source = CharBuffer.wrap(window);
+        this.lines = new LineIndex();
+    }
+
+    Lexer(CharSequence program){
+        this.reader = null;
+        this.source = program;
+        this.length = program.length();
+        this.exhausted = true;
+        this.lines = LineIndex.of(program);
+    }
+
+    /*
+     * Scans only program[from, to), which has to start at the beginning of a line, into a
+     * table. The caller says whether that line starts inside a comment, a comment running past
+     * to is left for whoever scans the next range. Past the first line, the newline ending the
+     * line before is taken to have been emitted already.
+     */
+    Lexer(CharSequence program, int from, int to, boolean inComment){
+        this(program);
+        this.position = from;
+        this.length = to;
+        this.partial = to < program.length();
+        this.atLineEnd = from > 0;
+        if(inComment){
+            skipComment(from);
+        }
+    }
+
+    Lexer(Path file) throws IOException {
+        this(MappedSource.map(file));
+    }
+
+    // An empty table for scanInto, able to resolve lexemes and lines for this source
+    TokenTable table(){
+        return reader == null ? new TokenTable(source) : new TokenTable(lines);
+    }
+
+    // Scans the rest of the source into one table
+    TokenTable tokenize(){
+        TokenTable table = table();
+        while(scanInto(table));
+        return table;
+    }
+
+    // Appends the next token to the table, returns false once the source is used up
+    boolean scanInto(TokenTable table){
+        if(!hasNext()){
+            return false;
+        }
+        scanned = false;
+        String lexeme = reader != null && kind >>> 3 == 0 ? lexeme() : null;
+        table.add(kind, base + tokenStart, base + tokenEnd, lexeme);
+        return true;
+    }
+
+    @Override
+    public boolean hasNext(){
+        if(!scanned && !finished){
+            scanned = scan();
+        }
+        return scanned;
+    }
+
+    @Override
+    public Token next(){
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+        scanned = false;
+        return new Token(TokenTable.categories[kind & 7], lexeme(), base + tokenStart, lines);
+    }
+
+    public Stream<Token> stream(){
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private String lexeme(){
+        int symbol = kind >>> 3;
+        return symbol != 0 ? TokenTable.symbols[symbol] : source.subSequence(tokenStart, tokenEnd).toString();
+    }
+
+    /*
+     * Every state is entered on the first character of a token and either consumes the
+     * whole token or hands a single character operator back, so no character is looked at
+     * by more than a constant number of states. Every line, including the last, ends in a
+     * newline token.
+     */
+    private boolean scan(){
+        if(!skipIgnored()){
+            finished = true;
+            return !atLineEnd && !partial && emit(NEWLINE, 0);
+        }
+        char c = source.charAt(position);
+        return switch(c){
+            case '\n' -> {
+                emit(NEWLINE, 1);
+                newLine();
+                atLineEnd = true;
+                yield true;
             }
+            case '{', '}', '(', ')', ',', ':', '#', '[', ']', '^', '*', '/', '%', '+', '.' -> emit(characters[c], 1);
+            case '|' -> {
+                if(peek(1) != '|') throw unexpected();
+                yield emit(DOUBLE_BAR, 2);
+            }
+            case '<' -> scanLess();
+            case '>' -> {
+                if(peek(1) == '>') yield emit(DOUBLE_GREATER, 2);
+                else if(peek(1) == '=') yield emit(GREATER_EQUAL, 2);
+                else yield emit(GREATER, 1);
+            }
+            case '=' -> {
+                if(peek(1) != '=') throw unexpected();
+                yield emit(EQUAL, 2);
+            }
+            case '!' -> {
+                if(peek(1) == '=') yield emit(NOT_EQUAL, 2);
+                else yield emit(NOT, 1);
+            }
+            case '-' -> scanDash();
+            case '"' -> scanString();
+            default -> {
+                if(isDigit(c)) yield scanNumber();
+                else if(isLower(c)) yield scanLowerWord();
+                else if(isUpper(c)) yield scanUpperWord();
+                else throw unexpected();
+            }
+        };
+    }
+
+    private void newLine(){
+        if(reader != null){
+            lines.add(base + position);
+        }
+    }
 
-            Matcher structureMatcher = structurePattern.matcher(line);
-            if(structureMatcher.find()){
-                String structureMatched = structureMatcher.group();
-                Token StructureToken = new Token("structure", structureMatched, lineNumber, i);
-                lineTokens.add(StructureToken);
-                line = line.substring(structureMatched.length());
-                i += structureMatched.length();
-                continue;
+    // Skips blanks and comments, returns false once the source is used up
+    private boolean skipIgnored(){
+        while(bufferLine()){
+            char c = source.charAt(position);
+            if(c == ' ' || c == '\t' || c == '\r'){
+                position++;
+            } else if(c == ':' && peek(1) == ':'){
+                position += 2;
+                skipComment(position - 2);
+            } else {
+                return true;
             }
+        }
+        return false;
+    }
 
-            String matched = "";
-            Token newToken = null;
-
-            for(int index = 0; index < patternList.size(); index++){
-                Matcher matcher = patternList.get(index).matcher(line);
-                if(matcher.find()){
-                    matched = matcher.group();
-                    String category = "default";
-                    switch(index){
-                        case 0 -> category = "keyword";
-                        case 1 -> category = "prototype";
-                        case 2 -> category = "integer/rational";
-                        case 3 -> category = "string";
-                        case 4 -> category = "id";
-                        //case 5 -> category = "list";
-                        //case 5 -> category = "map";
-                        case 5 -> category = "operator";
-                    }
-                    newToken = new Token(category, matched, lineNumber, i);
-                    break;
-                }
+    // Comments may span lines but emit nothing, not even the newlines inside them
+    private void skipComment(int opened){
+        while(bufferLine()){
+            char c = source.charAt(position);
+            if(c == ':' && peek(1) == ':'){
+                position += 2;
+                return;
             }
-            
-            lineTokens.add(newToken);
-            i += matched.length();
-            line = line.substring(matched.length());
-            //System.out.println(lineTokens.toString());
+            position++;
+            if(c == '\n'){
+                newLine();
+            }
+        }
+        if(!partial){
+            throw new UnexpectedCharacterException("Unterminated comment opened on " + where(opened));
         }
+    }
 
-        //System.out.println(lineTokens.toString());
-        lineTokens.add(new Token("structure", "\n", lineNumber, totalLineLength));
-        return lineTokens;
+    // Makes sure everything up to and including the next newline is in the window
+    private boolean bufferLine(){
+        if(searched < position){
+            searched = position;
+        }
+        while(!exhausted){
+            while(searched < length && source.charAt(searched) != '\n'){
+                searched++;
+            }
+            if(searched < length){
+                break;
+            }
+            refill();
+        }
+        return position < length;
     }
 
-    @Override
-    public String toString(){
-        return this.tokens.toString();
+    private void refill(){
+        int kept = length - position;
+        if(kept == window.length){
+            window = Arrays.copyOf(window, window.length * 2);
+            source = CharBuffer.wrap(window);
+        }
+        System.arraycopy(window, position, window, 0, kept);
+        base += position;
+        searched -= position;
+        position = 0;
+        length = kept;
+        try {
+            int read = reader.read(window, length, window.length - length);
+            if(read < 0){
+                exhausted = true;
+            } else {
+                length += read;
+            }
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
     }
 
-    public static void main(String[] args){
+    private boolean scanLess(){
+        char next = peek(1);
+        if(next == '<'){
+            return emit(DOUBLE_LESS, 2);
+        } else if(peek(2) == next && next < 128 && assignments[next] != 0){
+            return emit(assignments[next], 3);
+        }
+        return next == '=' ? emit(LESS_EQUAL, 2) : emit(LESS, 1);
+    }
+
+    private boolean scanDash(){
+        if(peek(1) == '-' && peek(2) == '<' && peek(3) == '('){
+            return emit(FACTORY, 4);
+        } else if(peek(1) == '-' && peek(2) == '>'){
+            return emit(INJECTION, 3);
+        } else {
+            int end = peek(1) == '(' ? casterEnd() : drainEnd();
+            if(end > 0){
+                return emit(TokenTable.kind(TokenTable.OPERATOR, 0), end - position);
+            } else {
+                return emit(MINUS, 1);
+            }
+        }
+    }
+
+    // -(TYPE)-> where TYPE may itself be a list or map prototype
+    private int casterEnd(){
+        int i = position + 2;
+        while(i < length && (isWord(source.charAt(i)) || source.charAt(i) == '|' || source.charAt(i) == '<' || source.charAt(i) == '>')) i++;
+        if(i == position + 2 || peek(i - position) != ')' || peek(i - position + 1) != '-' || peek(i - position + 2) != '>') return -1;
+        return i + 3;
+    }
+
+    // -a-b-...-> with at least one attribute
+    private int drainEnd(){
+        int i = position + 1;
+        while(true){
+            int j = i;
+            while(j < length && isWord(source.charAt(j))) j++;
+            if(j == i || j + 1 >= length || source.charAt(j) != '-') return -1;
+            if(source.charAt(j + 1) == '>') return j + 2;
+            i = j + 1;
+        }
+    }
+
+    private boolean scanString(){
+        int i = position + 1;
+        while(i < length && source.charAt(i) != '"' && source.charAt(i) != '\n') i++;
+        if(i >= length || source.charAt(i) != '"') throw unexpected();
+        return emit(TokenTable.kind(TokenTable.STRING, 0), i + 1 - position);
+    }
+
+    private boolean scanNumber(){
+        int i = position;
+        while(i < length && isDigit(source.charAt(i))) i++;
+        if(i + 1 < length && source.charAt(i) == '.' && isDigit(source.charAt(i + 1))){
+            i++;
+            while(i < length && isDigit(source.charAt(i))) i++;
+        }
+        if(i + 1 < length && (source.charAt(i) == 'E' || source.charAt(i) == 'e')){
+            int exponent = i + 1;
+            if(source.charAt(exponent) == '-' || source.charAt(exponent) == '+') exponent++;
+            if(exponent < length && isDigit(source.charAt(exponent))){
+                i = exponent;
+                while(i < length && isDigit(source.charAt(i))) i++;
+            }
+        }
+        return emit(TokenTable.kind(TokenTable.NUMBER, 0), i - position);
+    }
+
+    private boolean scanLowerWord(){
+        int i = position;
+        while(i < length && isWord(source.charAt(i))) i++;
+        int symbol = TokenTable.word(source, position, i);
+        if(symbol == 0){
+            return emit(TokenTable.kind(TokenTable.ID, 0), i - position);
+        }
+        boolean logical = TokenTable.symbols[symbol].equals("and") || TokenTable.symbols[symbol].equals("or");
+        return emit(TokenTable.kind(logical ? TokenTable.OPERATOR : TokenTable.KEYWORD, symbol), i - position);
+    }
+
+    private boolean scanUpperWord(){
+        int i = position;
+        while(i < length && isWord(source.charAt(i))) i++;
+        int symbol = TokenTable.word(source, position, i);
+        if(symbol != 0){
+            return emit(TokenTable.kind(TokenTable.KEYWORD, symbol), i - position);
+        }
+        int j = position;
+        while(j < i && isUpper(source.charAt(j))) j++;
+        return emit(TokenTable.kind(TokenTable.PROTOTYPE, 0), j - position);
+    }
+
+    private boolean emit(int kind, int size){
+        this.kind = kind;
+        this.tokenStart = position;
+        this.tokenEnd = position + size;
+        position += size;
+        atLineEnd = false;
+        return true;
+    }
+
+    private char peek(int ahead){
+        return position + ahead < length ? source.charAt(position + ahead) : '\0';
+    }
+
+    private UnexpectedCharacterException unexpected(){
+        return new UnexpectedCharacterException("Unexpected character: " + source.charAt(position) + " at " + where(position));
+    }
+
+    private String where(int offset){
+        return "line " + lines.line(base + offset) + " column " + lines.column(base + offset);
+    }
+
+    private static boolean isDigit(char c){
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLower(char c){
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isUpper(char c){
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isWord(char c){
+        return isLower(c) || isUpper(c) || isDigit(c) || c == '_';
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length > 0){
+            System.out.println(new Lexer(Path.of(args[0])).stream().toList());
+            return;
+        }
         String program = """
             ::::
 
@@ -184,7 +504,15 @@ class Lexer {
                 """;
         Lexer croccy = new Lexer(program);
 
-        System.out.println(croccy);
+        System.out.println(croccy.stream().toList());
+    }
+
+    public static class UnexpectedCharacterException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnexpectedCharacterException(String e){
+            super(e);
+        }
     }
 
 }
\ No newline at end of file
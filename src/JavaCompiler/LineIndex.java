@@ -0,0 +1,127 @@
+package JavaCompiler;
+
+/*
+ * Offsets of the first character of every line. Lines and columns are looked up by binary
+ * search instead of being carried around on every token. An index over a whole source only
+ * reads it the first time somebody asks, which for a program that compiles may be never;
+ * a streaming lexer builds one up instead as it passes the newlines.
+ *
+ * Like the token table, the offsets are a gap buffer: lines behind the gap count from the end
+ * of the source, so an edit only patches the lines it touches and never shifts the rest.
+ */
+class LineIndex {
+
+    private int[] starts = new int[64];
+    private int count = 1;
+    private int gap = 1;
+    private int sourceLength;
+    private volatile CharSequence source;
+
+    static LineIndex of(CharSequence source){
+        LineIndex index = new LineIndex();
+        index.source = source;
+        index.sourceLength = source.length();
+        return index;
+    }
+
+    // Adds the start of a line at the gap, which is the end of the index unless it is being edited
+    void add(int lineStart){
+        if(count == starts.length){
+            int tail = count - gap;
+            int[] grown = new int[count * 2];
+            System.arraycopy(starts, 0, grown, 0, gap);
+            System.arraycopy(starts, starts.length - tail, grown, grown.length - tail, tail);
+            starts = grown;
+        }
+        starts[gap++] = lineStart;
+        count++;
+    }
+
+    // 1 based, like the line numbers people read in an editor
+    int line(int offset){
+        if(source != null){
+            index();
+        }
+        return linesUpTo(offset);
+    }
+
+    int column(int offset){
+        return offset - start(line(offset) - 1);
+    }
+
+    // How many lines start at or before offset
+    private int linesUpTo(int offset){
+        int low = 0;
+        int high = count - 1;
+        while(low < high){
+            int middle = (low + high + 1) >>> 1;
+            if(start(middle) <= offset){
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    private int start(int line){
+        return line < gap ? starts[line] : starts[line + starts.length - count] + sourceLength;
+    }
+
+    /*
+     * Follows an edit of the source, now updated, that replaced removed characters at offset
+     * with inserted ones: drops the lines that started after a removed newline and adds those
+     * after an inserted one. An index nobody has asked yet just reads the edited text later.
+     */
+    synchronized void edit(CharSequence updated, int offset, int removed, int inserted){
+        if(source != null){
+            source = updated;
+            sourceLength = updated.length();
+            return;
+        }
+        moveGap(linesUpTo(offset));
+        while(gap < count && start(gap) <= offset + removed){
+            count--;
+        }
+        sourceLength = updated.length();
+        for(int i = offset; i < offset + inserted; i++){
+            if(updated.charAt(i) == '\n'){
+                add(i + 1);
+            }
+        }
+    }
+
+    // Puts the gap in front of line index, costs one move per line it passes
+    private void moveGap(int index){
+        int tail = starts.length - count;
+        if(index < gap){
+            int moved = gap - index;
+            System.arraycopy(starts, index, starts, index + tail, moved);
+            for(int i = index + tail; i < index + tail + moved; i++){
+                starts[i] -= sourceLength;
+            }
+        } else if(index > gap){
+            int moved = index - gap;
+            System.arraycopy(starts, gap + tail, starts, gap, moved);
+            for(int i = gap; i < gap + moved; i++){
+                starts[i] += sourceLength;
+            }
+        }
+        gap = index;
+    }
+
+    // Parsers sharing a table may all ask at once
+    private synchronized void index(){
+        if(source == null){
+            return;
+        }
+        moveGap(count);
+        for(int i = 0, length = source.length(); i < length; i++){
+            if(source.charAt(i) == '\n'){
+                add(i + 1);
+            }
+        }
+        source = null;
+    }
+
+}
@@ -0,0 +1,65 @@
+package JavaCompiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * A read-only view of a memory mapped source file. Outside of strings and comments Plumb
+ * is plain ASCII, so every byte is handed to the lexer as one char and only the lexemes
+ * that are actually materialized get decoded as UTF-8.
+ */
+class MappedSource implements CharSequence {
+
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    private MappedSource(ByteBuffer bytes, int offset, int length){
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    static MappedSource map(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE){
+                throw new IOException(file + " is too large to map");
+            }
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), 0, (int) size);
+        }
+    }
+
+    @Override
+    public int length(){
+        return length;
+    }
+
+    @Override
+    public char charAt(int index){
+        if(index < 0 || index >= length){
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (char) (bytes.get(offset + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end){
+        if(start < 0 || end > length || start > end){
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+        }
+        return new MappedSource(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString(){
+        byte[] range = new byte[length];
+        bytes.get(offset, range);
+        return new String(range, StandardCharsets.UTF_8);
+    }
+
+}
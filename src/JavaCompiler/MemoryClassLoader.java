@@ -0,0 +1,59 @@
+package JavaCompiler;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/*
+ * Defines classes from bytes held in memory, keyed by binary name, so a compiled Plumb program
+ * runs without ever being written out. Each run gets a loader of its own, which gives the
+ * program's classes fresh static state even when the bytes are shared with an earlier run.
+ * The runtime classes come from the parent and are shared by every run in the process, so
+ * they keep no state of a program's in statics; its pool and lanes live on its Scheduler.
+ */
+class MemoryClassLoader extends ClassLoader {
+
+    private final Map<String, byte[]> classes;
+
+    MemoryClassLoader(Map<String, byte[]> classes){
+        super(MemoryClassLoader.class.getClassLoader());
+        this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classes.get(name);
+        if(bytes == null){
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+    Class<?> load(String name){
+        try {
+            return loadClass(name);
+        } catch(ClassNotFoundException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Calls main of the class called name, rethrowing whatever the program throws as it was thrown
+    void run(String name, String[] args){
+        try {
+            Method main = load(name).getMethod("main", String[].class);
+            // The source backend's Start is not public
+            main.setAccessible(true);
+            main.invoke(null, (Object) args);
+        } catch(NoSuchMethodException | IllegalAccessException e){
+            throw new IllegalStateException(e);
+        } catch(InvocationTargetException e){
+            if(e.getCause() instanceof RuntimeException cause){
+                throw cause;
+            } else if(e.getCause() instanceof Error error){
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+}
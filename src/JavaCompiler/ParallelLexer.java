@@ -0,0 +1,130 @@
+package JavaCompiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+ * Lexes a whole source on a fork join pool. The source is cut into chunks at line starts;
+ * the only thing a line can inherit from the lines before it is being inside a comment, as
+ * strings end with their line. So every chunk is first run through a cheap state machine
+ * from both possible starting states, the real starting state of each chunk falls out of
+ * chaining those results, and then the chunks are lexed side by side and joined.
+ */
+class ParallelLexer {
+
+    static final int CHUNK_SIZE = 1 << 18;
+
+    private static final int CODE = 0;
+    private static final int STRING = 1;
+    private static final int COMMENT = 2;
+
+    static TokenTable tokenize(CharSequence source){
+        return tokenize(source, ForkJoinPool.commonPool(), CHUNK_SIZE);
+    }
+
+    static TokenTable tokenize(CharSequence source, ForkJoinPool pool, int chunkSize){
+        int[] bounds = chunks(source, chunkSize);
+        int count = bounds.length - 1;
+        if(count == 1){
+            return new Lexer(source).tokenize();
+        }
+
+        List<Callable<int[]>> prescans = new ArrayList<Callable<int[]>>();
+        for(int i = 0; i < count; i++){
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            prescans.add(() -> prescan(source, from, to));
+        }
+        List<int[]> summaries = all(pool.invokeAll(prescans));
+
+        List<Callable<TokenTable>> lexers = new ArrayList<Callable<TokenTable>>();
+        boolean inComment = false;
+        for(int i = 0; i < count; i++){
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            boolean startsInComment = inComment;
+            lexers.add(() -> {
+                Lexer lexer = new Lexer(source, from, to, startsInComment);
+                TokenTable table = new TokenTable(source);
+                while(lexer.scanInto(table));
+                return table;
+            });
+            int[] summary = summaries.get(i);
+            inComment = summary[inComment ? 1 : 0] == COMMENT;
+        }
+        TokenTable table = TokenTable.join(source, all(pool.invokeAll(lexers)));
+        // A last chunk inside a comment can't tell whether its source still owes a final newline
+        int last = table.size() - 1;
+        if(last < 0 || table.symbol(last) != TokenTable.symbol("\n")){
+            table.add(TokenTable.kind(TokenTable.STRUCTURE, TokenTable.symbol("\n")), source.length(), source.length(), null);
+        }
+        return table;
+    }
+
+    // Chunk boundaries, each one just past a newline so every chunk holds whole lines
+    private static int[] chunks(CharSequence source, int chunkSize){
+        int length = source.length();
+        ArrayList<Integer> bounds = new ArrayList<Integer>();
+        bounds.add(0);
+        int next = chunkSize;
+        while(next < length){
+            while(next < length && source.charAt(next - 1) != '\n'){
+                next++;
+            }
+            if(next < length){
+                bounds.add(next);
+            }
+            next += chunkSize;
+        }
+        bounds.add(length);
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // The state the chunk ends in when entered outside and inside a comment
+    private static int[] prescan(CharSequence source, int from, int to){
+        return new int[]{walk(source, from, to, CODE), walk(source, from, to, COMMENT)};
+    }
+
+    /*
+     * Mirrors the lexer: "::" outside a string opens or closes a comment, a quote outside a
+     * comment opens or closes a string, and a newline ends any string.
+     */
+    private static int walk(CharSequence source, int from, int to, int state){
+        for(int i = from; i < to; i++){
+            char c = source.charAt(i);
+            if(c == '\n'){
+                if(state == STRING) state = CODE;
+            } else if(c == '"'){
+                if(state == CODE) state = STRING;
+                else if(state == STRING) state = CODE;
+            } else if(c == ':' && state != STRING && i + 1 < to && source.charAt(i + 1) == ':'){
+                state = state == CODE ? COMMENT : CODE;
+                i++;
+            }
+        }
+        return state == STRING ? CODE : state;
+    }
+
+    private static <T> List<T> all(List<Future<T>> futures){
+        List<T> results = new ArrayList<T>();
+        try {
+            for(Future<T> future : futures){
+                results.add(future.get());
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e){
+            if(e.getCause() instanceof RuntimeException cause){
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+}
@@ -1,106 +1,167 @@
 package JavaCompiler;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Optional;
-import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import JavaCompiler.Core.*;
 
 public class Parser {
 
-    Queue<Token> lexemes;
+    Lexer lexer;
+    TokenTable lexemes;
+    ForkJoinPool pool;
+    ArrayList<UnexpectedMatchException> errors;
+    IncrementalParser cache;
+    Interner interner = new Interner();
+    int cursor = 0;
     Program root;
+    // Set once a recovering parse has said the input ended, so enclosing blocks don't say it again
+    boolean endReported = false;
+
+    /*
+     * Tokens are pulled from the lexer only as far as the parser has looked ahead, and the
+     * ones already parsed are dropped from the front of the table as it goes, so the table
+     * only ever holds the rest of the line being decided on.
+     */
+    Parser(Lexer lexer) throws UnexpectedMatchException {
+        this.lexer = lexer;
+        this.lexemes = lexer.table();
+        this.root = parseProgram();
+    }
+
+    Parser(TokenTable lexemes) throws UnexpectedMatchException {
+        this.lexer = null;
+        this.lexemes = lexemes;
+        this.root = parseProgram();
+    }
+
+    // Parses the top level statements of the Definitions block side by side on pool
+    Parser(TokenTable lexemes, ForkJoinPool pool) throws UnexpectedMatchException {
+        this.lexer = null;
+        this.lexemes = lexemes;
+        this.pool = pool;
+        this.root = parseProgram();
+    }
+
+    /*
+     * Doesn't stop at the first error: every diagnostic goes into errors, the statement it
+     * was found in is skipped up to the next newline or closing brace, and parsing goes on.
+     * A Definitions or Pipelines block missing its opening brace is read as though it had
+     * one. The root then holds every statement that did parse, for later phases to check.
+     */
+    Parser(TokenTable lexemes, ArrayList<UnexpectedMatchException> errors) throws UnexpectedMatchException {
+        this.lexer = null;
+        this.lexemes = lexemes;
+        this.errors = errors;
+        this.root = parseProgram();
+    }
 
-    Parser(ArrayList<Token> lexemes) throws UnexpectedMatchException {
-        this.lexemes = new LinkedList<Token>(lexemes);
+    // Reuses the top level statements cache kept from the tokens of its last parse
+    Parser(TokenTable lexemes, IncrementalParser cache) throws UnexpectedMatchException {
+        this.lexer = null;
+        this.lexemes = lexemes;
+        this.cache = cache;
+        this.interner = cache.interner();
         this.root = parseProgram();
     }
 
-    private Boolean at(String candidate){
+    // A worker for some of the statements of a Definitions block, reading the shared table
+    private Parser(TokenTable lexemes, Interner interner, int cursor){
+        this.lexer = null;
+        this.lexemes = lexemes;
+        this.interner = interner;
+        this.cursor = cursor;
+    }
+
+    private int peek(int ahead) throws UnexpectedMatchException {
+        while(cursor + ahead >= lexemes.size()){
+            if(lexer == null || !lexer.scanInto(lexemes)){
+                throw endOfInput("Unexpected end of input");
+            }
+        }
+        return cursor + ahead;
+    }
+
+    private void advance() throws UnexpectedMatchException {
+        peek(0);
+        cursor++;
+        if(lexer != null && cursor >= 1024){
+            lexemes.discard(cursor);
+            cursor = 0;
+        }
+    }
+
+    private Boolean hasMore(){
+        return cursor < lexemes.size() || (lexer != null && lexer.scanInto(lexemes));
+    }
+
+    private Boolean at(String candidate) throws UnexpectedMatchException {
         //System.out.print("AT --> ");
         //System.out.println(candidate);
-        return candidate.equals(lexemes.element().category()) || candidate.equals(lexemes.element().lexeme());
+        return lexemes.is(peek(0), candidate);
     }
 
-    private Token at(){
+    private Token at() throws UnexpectedMatchException {
         //System.out.print("AT --> ");
-        //System.out.println(lexemes.element());
-        return lexemes.element();
+        //System.out.println(lexemes.lexeme(peek(0)));
+        return lexemes.token(peek(0));
     }
 
-    private Token match(String expected) throws UnexpectedMatchException {
+    private String match(String expected) throws UnexpectedMatchException {
         //System.out.print("MATCH --> ");
         //System.out.println(expected);
         if(this.at(expected)){
-            return this.lexemes.remove();
+            return this.match();
         } else {
-            throw new UnexpectedMatchException("Expected: " + expected + " But got: " + this.lexemes.element().toString() + " Instead." );
+            throw unexpected(expected);
         }
     }
 
-    private Token match() {
-        //System.out.print("MATCH --> ");
-        Token bob = this.lexemes.remove();
-        //System.out.println(bob);
-        return bob;
-    }
-
-    private Queue<Token> pull(int amountToPull){
-        Queue<Token> pulledTokens = new LinkedList<Token>();
-        for(int i = 0; i < amountToPull; i++){
-            pulledTokens.add(this.lexemes.remove());
-        }
-        return pulledTokens;
+    private UnexpectedMatchException unexpected(String expected) throws UnexpectedMatchException {
+        int next = peek(0);
+        String got = lexemes.is(next, "\n") ? "newline" : lexemes.lexeme(next);
+        return new UnexpectedMatchException("Expected: " + expected + " But got: " + got + " Instead, at line " + lexemes.line(next) + " column " + lexemes.column(next) + "." );
     }
 
-    private LinkedList<Token> pull(String pullTill){
-        LinkedList<Token> pulledTokens = new LinkedList<Token>();
-        for(Token token = this.lexemes.remove(); !token.lexeme().equals(pullTill); token = this.lexemes.remove()){
-            pulledTokens.add(token);
-        }
-        return pulledTokens;
+    // Running out of tokens, reported at the last token there is
+    private UnexpectedMatchException endOfInput(String message){
+        int last = lexemes.size() - 1;
+        String at = last < 0 ? "" : ", at line " + lexemes.line(last) + " column " + lexemes.column(last);
+        return new UnexpectedMatchException(message + at + ".");
     }
 
-    private Queue<Token> slide(int amountToSlide){
-        Queue<Token> lexemeCopy = new LinkedList<Token>();
-        for(Token token: this.lexemes){
-            Token copy = new Token(token.category(), token.lexeme(), token.line(), token.column());
-            lexemeCopy.add(copy);
-        }
-        Queue<Token> slidTokens = new LinkedList<Token>();
-        for(int i = 0; i < amountToSlide; i++){
-            slidTokens.add(lexemeCopy.remove());
-        }
-        return slidTokens;
+    private String match() throws UnexpectedMatchException {
+        //System.out.print("MATCH --> ");
+        String bob = lexemes.lexeme(peek(0));
+        this.advance();
+        //System.out.println(bob);
+        return bob;
     }
 
-    private LinkedList<Token> slideTill(String slideTill){
-        Queue<Token> lexemeCopy = new LinkedList<Token>();
-        for(Token token: this.lexemes){
-            Token copy = new Token(token.category(), token.lexeme(), token.line(), token.column());
-            lexemeCopy.add(copy);
-        }
-
-        LinkedList<Token> slidTokens = new LinkedList<Token>();
-        for(Token token = lexemeCopy.remove(); !token.lexeme().equals(slideTill); token = lexemeCopy.remove()){
-            slidTokens.add(token);
+    // Whether candidate shows up before the end of the current line, looking ahead in place
+    private Boolean onThisLine(String candidate) throws UnexpectedMatchException {
+        for(int i = 0; !lexemes.is(peek(i), "\n"); i++){
+            if(lexemes.is(peek(i), candidate)){
+                return true;
+            }
         }
-        return slidTokens;
+        return false;
     }
 
     private void whiteSpaceRemover() throws UnexpectedMatchException {
-        if(this.lexemes.size() > 0){
-            while(at("\n")){
-                match("\n");
-                if(this.lexemes.size() <= 0){
-                    break;
-                }
-            }
+        while(hasMore() && at("\n")){
+            match("\n");
         }
     }
 
     private Program parseProgram() throws UnexpectedMatchException {
+        whiteSpaceRemover();
         Optional<ArrayList<ImportDec>> imports = parseImportDec();
         whiteSpaceRemover();
         Optional<DefinitionsDec> definition = parseDefinitionsDec();
@@ -111,12 +172,20 @@ public class Parser {
     }
 
     private Optional<ArrayList<ImportDec>> parseImportDec() throws UnexpectedMatchException {
-        if(at("import")){
+        if(hasMore() && at("import")){
             Optional<ArrayList<ImportDec>> imports = Optional.of(new ArrayList<ImportDec>());
-            while(at("import")){
-                match("import");
-                String path = match().lexeme();
-                imports.get().add(new ImportDec(path));
+            while(hasMore() && at("import")){
+                try {
+                    match("import");
+                    String path = match();
+                    imports.get().add(new ImportDec(path));
+                } catch (UnexpectedMatchException e){
+                    if(errors == null){
+                        throw e;
+                    }
+                    errors.add(e);
+                    synchronize();
+                }
                 whiteSpaceRemover();
             }
             return imports;
@@ -126,36 +195,256 @@ public class Parser {
     }
 
     private Optional<DefinitionsDec> parseDefinitionsDec() throws UnexpectedMatchException {
-        if(at("Definitions")){
+        if(hasMore() && at("Definitions")){
             Optional<ArrayList<Statement>> statements = Optional.of(new ArrayList<Statement>());
             match("Definitions");
-            match("{");
+            openBlock();
             whiteSpaceRemover();
-            while(!at("}")){
-                Statement statement = parseStatement();
-                statements.get().add(statement);
+            ArrayList<Statement> parsed = pool == null ? null : parseStatementsInParallel();
+            if(parsed != null){
+                statements = Optional.of(parsed);
+            }
+            while(!atBlockEnd()){
+                if(cache == null){
+                    parseStatementInto(statements.get());
+                } else {
+                    parseCachedStatementInto(statements.get());
+                }
                 whiteSpaceRemover();
             }
-            match("}");
+            closeBlock();
             return Optional.of(new DefinitionsDec(statements));
         } else {
             return Optional.empty();
         }
     }
 
+    /*
+     * A top level statement ends at the first newline outside of any brackets, so the
+     * statements of a Definitions block can be cut apart on tokens alone and handed out in
+     * batches to parsers of their own. Each has to stop right at the end of its statement, as
+     * the sequential loop would. If anything goes wrong the cursor is left where it was and
+     * null sends the caller down the sequential loop, which then reports the error where a
+     * sequential parse always has.
+     */
+    private static final int BATCH_TOKENS = 4096;
+
+    private ArrayList<Statement> parseStatementsInParallel(){
+        ArrayList<Integer> starts = new ArrayList<Integer>();
+        ArrayList<Integer> ends = new ArrayList<Integer>();
+        int i = cursor;
+        while(i < lexemes.size() && !lexemes.is(i, "}")){
+            if(lexemes.is(i, "\n")){
+                i++;
+                continue;
+            }
+            int end = statementEnd(i);
+            if(end < 0){
+                return null;
+            }
+            starts.add(i);
+            ends.add(end);
+            i = end;
+        }
+        if(i == lexemes.size()){
+            return null;
+        }
+        int close = i;
+
+        List<Callable<ArrayList<Statement>>> batches = new ArrayList<Callable<ArrayList<Statement>>>();
+        for(int first = 0; first < starts.size();){
+            int last = first;
+            while(last + 1 < starts.size() && starts.get(last + 1) - starts.get(first) < BATCH_TOKENS){
+                last++;
+            }
+            int from = first;
+            int to = last + 1;
+            batches.add(() -> {
+                ArrayList<Statement> parsed = new ArrayList<Statement>();
+                Parser worker = new Parser(lexemes, interner, starts.get(from));
+                for(int statement = from; statement < to; statement++){
+                    worker.cursor = starts.get(statement);
+                    parsed.add(worker.parseStatement());
+                    int next = statement + 1 < starts.size() ? starts.get(statement + 1) : close;
+                    if(worker.cursor < ends.get(statement) || worker.cursor > next){
+                        return null;
+                    }
+                }
+                return parsed;
+            });
+            first = to;
+        }
+
+        ArrayList<Statement> statements = new ArrayList<Statement>();
+        try {
+            for(Future<ArrayList<Statement>> batch : pool.invokeAll(batches)){
+                ArrayList<Statement> parsed = batch.get();
+                if(parsed == null){
+                    return null;
+                }
+                statements.addAll(parsed);
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e){
+            return null;
+        }
+        cursor = close;
+        return statements;
+    }
+
+    // The newline ending the top level statement starting at from, -1 if its block or the input ends first
+    private int statementEnd(int from){
+        int depth = 0;
+        for(int i = from; i < lexemes.size(); i++){
+            int symbol = lexemes.symbol(i);
+            if(symbol == OPEN_BRACE || symbol == OPEN_PAREN || symbol == OPEN_BRACKET){
+                depth++;
+            } else if(symbol == CLOSE_BRACE || symbol == CLOSE_PAREN || symbol == CLOSE_BRACKET){
+                if(--depth < 0){
+                    return -1;
+                }
+            } else if(depth == 0 && symbol == NEWLINE){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final int NEWLINE = TokenTable.symbol("\n");
+    private static final int OPEN_BRACE = TokenTable.symbol("{");
+    private static final int CLOSE_BRACE = TokenTable.symbol("}");
+    private static final int OPEN_PAREN = TokenTable.symbol("(");
+    private static final int CLOSE_PAREN = TokenTable.symbol(")");
+    private static final int OPEN_BRACKET = TokenTable.symbol("[");
+    private static final int CLOSE_BRACKET = TokenTable.symbol("]");
+
+    private ArrayList<Statement> parseBlock() throws UnexpectedMatchException {
+        ArrayList<Statement> statements = new ArrayList<Statement>();
+        match("{");
+        whiteSpaceRemover();
+        while(!atBlockEnd()){
+            parseStatementInto(statements);
+            whiteSpaceRemover();
+        }
+        closeBlock();
+        return statements;
+    }
+
+    // A recovering parse can run out of tokens inside a block, that shows up as its missing brace
+    private Boolean atBlockEnd() throws UnexpectedMatchException {
+        return errors != null && !hasMore() || at("}");
+    }
+
+    // A recovering parse reads a top level block with no opening brace as though it had one
+    private void openBlock() throws UnexpectedMatchException {
+        if(errors == null){
+            match("{");
+        } else if(!hasMore()){
+            errors.add(endOfInput("Expected: { But got: end of input Instead"));
+            endReported = true;
+        } else if(at("{")){
+            match("{");
+        } else {
+            errors.add(unexpected("{"));
+        }
+    }
+
+    // Only the innermost of the blocks the input ends in reports it
+    private void closeBlock() throws UnexpectedMatchException {
+        if(errors != null && !hasMore()){
+            if(!endReported){
+                errors.add(endOfInput("Expected: } But got: end of input Instead"));
+                endReported = true;
+            }
+        } else {
+            match("}");
+        }
+    }
+
+    private void parseStatementInto(ArrayList<Statement> statements) throws UnexpectedMatchException {
+        if(errors == null){
+            statements.add(parseStatement());
+            return;
+        }
+        try {
+            statements.add(parseStatement());
+        } catch (UnexpectedMatchException e){
+            errors.add(e);
+            synchronize();
+        }
+    }
+
+    /*
+     * A top level statement parses the same from the same tokens, so the cache hands back the
+     * statements it kept whose tokens no edit has touched. One that parsed right up to its
+     * newline, as the loop over a block expects, is kept for the next parse.
+     */
+    private void parseCachedStatementInto(ArrayList<Statement> statements) throws UnexpectedMatchException {
+        int reused = cache.reuse(lexemes, cursor, statements);
+        if(reused >= 0){
+            cursor = reused;
+            return;
+        }
+        int start = cursor;
+        int end = statementEnd(cursor);
+        int parsed = statements.size();
+        ArrayList<Object> interned = new ArrayList<Object>();
+        interner.record(interned);
+        try {
+            parseStatementInto(statements);
+        } finally {
+            interner.record(null);
+        }
+        if(end >= 0 && statements.size() > parsed && cursor >= end && onlyNewlines(end, cursor)){
+            cache.remember(start, end, statements.get(parsed), interned.toArray());
+        }
+    }
+
+    private Boolean onlyNewlines(int from, int to){
+        for(int i = from; i < to; i++){
+            if(!lexemes.is(i, "\n")){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Panic mode: skips to the newline ending the broken statement or the brace closing its block
+    private void synchronize() throws UnexpectedMatchException {
+        int depth = 0;
+        while(hasMore()){
+            if(at("{")){
+                depth++;
+            } else if(at("}")){
+                if(depth == 0){
+                    return;
+                }
+                depth--;
+            } else if(at("\n") && depth == 0){
+                return;
+            }
+            advance();
+        }
+    }
+
     private Statement parseStatement() throws UnexpectedMatchException {
-        Queue<Token> slidTokens = slide(3);
-        Token first = slidTokens.remove();
-        Token second = slidTokens.remove();
-        Token third = slidTokens.remove();
+        // Decided on the next three tokens, read off the table before the cursor moves on
+        String first = lexemes.categoryName(peek(0));
+        String keyword = first.equals("keyword") ? lexemes.lexeme(peek(0)) : "";
+        String second = lexemes.categoryName(peek(1));
+        String operator = first.equals("id") ? lexemes.lexeme(peek(1)) : "";
+        String third = lexemes.categoryName(peek(2));
+        Boolean function = (first.equals("structure") || keyword.equals("ATR") && third.equals("structure")) && onThisLine("FUNC");
         whiteSpaceRemover();
-        return switch(first.category()){
-            case "keyword" -> switch(first.lexeme()){
+        return switch(first){
+            case "keyword" -> switch(keyword){
                 case "self" -> parseAssignment();
                 case "PROTO" -> parsePrototypeDec();
-                case "ATR" -> switch(third.category()){
+                case "ATR" -> switch(third){
                         case "keyword" -> parseMethodDec();
-                        case "structure" -> slideTill("\n").stream().map(t -> t.lexeme()).filter(lex -> lex.equals("FUNC")).count() > 0 ? parseMethodDec() : parseAttributeDec();
+                        case "structure" -> function ? parseMethodDec() : parseAttributeDec();
                         default -> parseAttributeDec(); //case "id"
                     };
                 case "if" -> parseIfStatement();
@@ -165,15 +454,15 @@ public class Parser {
                 case "continue" -> parseContinueStatement();
                 default -> parseBreakStatement(); //case "break"
             };
-            case "prototype" -> switch(second.category()){
-                case "keyword" -> switch(third.category()){
+            case "prototype" -> switch(second){
+                case "keyword" -> switch(third){
                     case "id" -> parseFunctionDec();
                     default -> parseConstructorDec(); //case "prototype"
                 };
                 default -> parseVariableDec(); //case "id"
             };
-            case "structure" -> slideTill("\n").stream().map(t -> t.lexeme()).filter(lex -> lex.equals("FUNC")).count() > 0 ? parseFunctionDec() : parseVariableDec();
-            case "id" -> switch(second.lexeme()){
+            case "structure" -> function ? parseFunctionDec() : parseVariableDec();
+            case "id" -> switch(operator){
                 case "<==" -> parseAssignment();
                 case "<++" -> parseAssignment();
                 case "<--" -> parseAssignment();
@@ -191,31 +480,22 @@ public class Parser {
             match("||");
             Prototype innerType = parsePrototype();
             match("||");
-            return new ListPrototype(innerType);
+            return interner.list(innerType);
         } else if(at("<<")){
             match("<<");
             Prototype innerType = parsePrototype();
             match(">>");
-            return new MapPrototype(innerType);
+            return interner.map(innerType);
         } else {
-            String prototype = match("prototype").lexeme();
-            Prototype type = switch(prototype){
-                case "INT" -> BasePrototype.INT;
-                case "RAT" -> BasePrototype.RAT;
-                case "STR" -> BasePrototype.STR;
-                case "BOOL" -> BasePrototype.BOOL;
-                case "DNE" -> BasePrototype.DNE;
-                default -> new BasePrototype(prototype); //don't make a new one everytime, make sure its stored
-            };
-            return type;
+            return interner.base(match("prototype"));
         }
         
     }
 
     private VariableDec parseVariableDec() throws UnexpectedMatchException {
         Prototype type = parsePrototype();
-        String identifier = match("id").lexeme();
-        String operator = match("operator").lexeme();
+        String identifier = match("id");
+        String operator = match("operator");
         Expression expression = parseExpression();
 
         return new VariableDec(type, identifier, operator, expression);
@@ -230,8 +510,8 @@ public class Parser {
             match(".");
         }
 
-        String identifier = match("id").lexeme();
-        String operator = match("operator").lexeme();
+        String identifier = match("id");
+        String operator = match("operator");
         Expression expression = parseExpression();
         
         return new Assignment(selfAssign, identifier, operator, expression);
@@ -239,10 +519,9 @@ public class Parser {
 
     private FunctionDec parseFunctionDec() throws UnexpectedMatchException {
         ArrayList<ParameterDec> parameters = new ArrayList<ParameterDec>();
-        ArrayList<Statement> statements = new ArrayList<Statement>();
         Prototype returnType = parsePrototype();
         match("keyword");
-        String identifier = match("id").lexeme();
+        String identifier = match("id");
         match("(");
         while(!at(")")){
             ParameterDec newParam = parseParameterDec();
@@ -252,37 +531,22 @@ public class Parser {
             }
         }
         match(")");
-        match("{");
-        whiteSpaceRemover();
-        while(!at("}")){
-            Statement statement = parseStatement();
-            statements.add(statement);
-            whiteSpaceRemover();
-        }
-        match("}");
+        ArrayList<Statement> statements = parseBlock();
         whiteSpaceRemover();
         return new FunctionDec(returnType, identifier, parameters, statements);
     }
 
     private ParameterDec parseParameterDec() throws UnexpectedMatchException {
         Prototype type = parsePrototype();
-        String identifier = match("id").lexeme();
+        String identifier = match("id");
         return new ParameterDec(type, identifier);
     }
 
     private PrototypeDec parsePrototypeDec() throws UnexpectedMatchException {
-        ArrayList<Statement> statements = new ArrayList<Statement>();
         match("keyword");
-        String identifier = match("prototype").lexeme();
-        Prototype type = new BasePrototype(identifier);
-        match("{");
-        whiteSpaceRemover();
-        while(!at("}")){
-            Statement statement = parseStatement();
-            statements.add(statement);
-            whiteSpaceRemover();
-        }
-        match("}");
+        String identifier = match("prototype");
+        Prototype type = interner.base(identifier);
+        ArrayList<Statement> statements = parseBlock();
         whiteSpaceRemover();
         return new PrototypeDec(type, identifier, statements);
     }
@@ -290,9 +554,9 @@ public class Parser {
     private AttributeDec parseAttributeDec() throws UnexpectedMatchException {
         match("keyword");
         Prototype type = parsePrototype();
-        String identifier = match("id").lexeme();
+        String identifier = match("id");
         if(at("operator")){
-            Optional<String> operator = Optional.of(match("").lexeme());
+            Optional<String> operator = Optional.of(match(""));
             Optional<Expression> expression = Optional.of(parseExpression());
             return new AttributeDec(type, identifier, operator, expression);
         } else {
@@ -303,31 +567,22 @@ public class Parser {
     private MethodDec parseMethodDec() throws UnexpectedMatchException {
         match("keyword");
         ArrayList<ParameterDec> parameters = new ArrayList<ParameterDec>();
-        ArrayList<Statement> statements = new ArrayList<Statement>();
         Prototype returnType = parsePrototype();
         match("keyword");
-        String identifier = match("id").lexeme();
+        String identifier = match("id");
         match("(");
         while(!at(")")){
             ParameterDec newParam = parseParameterDec();
             parameters.add(newParam);
         }
         match(")");
-        match("{");
-        whiteSpaceRemover();
-        while(!at("}")){
-            Statement statement = parseStatement();
-            statements.add(statement);
-            whiteSpaceRemover();
-        }
-        match("}");
+        ArrayList<Statement> statements = parseBlock();
         whiteSpaceRemover();
         return new MethodDec(returnType, identifier, parameters, statements);
     }
 
     private ConstructorDec parseConstructorDec() throws UnexpectedMatchException {
         ArrayList<ParameterDec> parameters = new ArrayList<ParameterDec>();
-        ArrayList<Statement> statements = new ArrayList<Statement>();
         Prototype type = parsePrototype(); //don't make a new one everytime, make sure its stored
         match("keyword");
         match("prototype"); //can include check to make sure same as type
@@ -337,56 +592,32 @@ public class Parser {
             parameters.add(newParam);
         }
         match(")");
-        match("{");
-        whiteSpaceRemover();
-        while(!at("}")){
-            Statement statement = parseStatement();
-            statements.add(statement);
-            whiteSpaceRemover();
-        }
-        match("}");
+        ArrayList<Statement> statements = parseBlock();
         whiteSpaceRemover();
         return new ConstructorDec(type, parameters, statements);
     }
 
     private IfStatement parseIfStatement() throws UnexpectedMatchException {
-        ArrayList<Statement> statements = new ArrayList<Statement>();
         match("if");
         match("(");
         Expression condition = parseExpression();
         match(")");
-        match("{");
-        whiteSpaceRemover();
-        while(!at("}")){
-            Statement statement = parseStatement();
-            statements.add(statement);
-            whiteSpaceRemover();
-        }
-        match("}");
+        ArrayList<Statement> statements = parseBlock();
         whiteSpaceRemover();
         return new IfStatement(condition, statements);
     }
 
     private WhileStatement parseWhileStatement() throws UnexpectedMatchException {
-        ArrayList<Statement> statements = new ArrayList<Statement>();
         match("while");
         match("(");
         Expression condition = parseExpression();
         match(")");
-        match("{");
-        whiteSpaceRemover();
-        while(!at("}")){
-            Statement statement = parseStatement();
-            statements.add(statement);
-            whiteSpaceRemover();
-        }
-        match("}");
+        ArrayList<Statement> statements = parseBlock();
         whiteSpaceRemover();
         return new WhileStatement(condition, statements);
     }
 
     private ForStatement parseForStatement() throws UnexpectedMatchException {
-        ArrayList<Statement> statements = new ArrayList<Statement>();
         match("for");
         match("(");
         Statement iterator = parseStatement();
@@ -395,14 +626,7 @@ public class Parser {
         match(":");
         Statement iteration = parseStatement();
         match(")");
-        match("{");
-        whiteSpaceRemover();
-        while(!at("}")){
-            Statement statement = parseStatement();
-            statements.add(statement);
-            whiteSpaceRemover();
-        }
-        match("}");
+        ArrayList<Statement> statements = parseBlock();
         whiteSpaceRemover();
         return new ForStatement(iterator, condition, iteration, statements);
     }
@@ -439,94 +663,60 @@ public class Parser {
         return new KeyValuePair(key, value);
     }
 
-    private Expression parseExpression() throws UnexpectedMatchException {
-        Expression left = parseExp1();
-        while(at("or")){
-            String operator = match("or").lexeme();
-            Expression right = parseExp1();
-            left = new BinaryExpression(left, operator, right);
-        }
-        return left;
-    }
-
-    private Expression parseExp1() throws UnexpectedMatchException {
-        Expression left = parseExp2();
-        while(at("and")){
-            String operator = match("and").lexeme();
-            Expression right = parseExp2();
-            left = new BinaryExpression(left, operator, right);
-        }
-        return left;
-    }
-
-    private Expression parseExp2() throws UnexpectedMatchException {
-        Expression left = parseExp3();
-        while(at("==") || at("!=")){
-            String operator = match().lexeme();
-            Expression right = parseExp3();
-            left = new BinaryExpression(left, operator, right);
-        }
-        return left;
+    /*
+     * Binary operators with their precedence from the table in the README, where a lower
+     * level binds tighter. Levels 1 and 2 are the postfix and prefix operators handled by
+     * parseExp7 and parseUnary, and assignments only ever start a statement. Everything
+     * is looked up by the symbol code of the token, so no lexeme gets compared.
+     */
+    private static final int LOOSEST = 9;
+    private static final int[] precedence = new int[TokenTable.symbols.length];
+    private static final boolean[] rightAssociative = new boolean[TokenTable.symbols.length];
+    static {
+        binary(3, true, "^");
+        binary(4, false, "*", "/", "%");
+        binary(5, false, "+", "-");
+        binary(6, false, "<", "<=", ">", ">=");
+        binary(7, false, "==", "!=");
+        binary(8, false, "and");
+        binary(9, false, "or");
     }
 
-    private Expression parseExp3() throws UnexpectedMatchException {
-        Expression left = parseExp4();
-        while(at("<=") || at(">=") || at("<") || at(">")){
-            String operator = match().lexeme();
-            Expression right = parseExp4();
-            left = new BinaryExpression(left, operator, right);
+    private static void binary(int level, boolean right, String... operators){
+        for(String operator : operators){
+            precedence[TokenTable.symbol(operator)] = level;
+            rightAssociative[TokenTable.symbol(operator)] = right;
         }
-        return left;
     }
 
-    private Expression parseExp4() throws UnexpectedMatchException {
-        Expression left = parseExp5();
-        Expression expression = parseExp4Prime(left);
-        return expression;
+    private Expression parseExpression() throws UnexpectedMatchException {
+        return parseExpression(LOOSEST);
     }
 
-    private Expression parseExp4Prime(Expression left) throws UnexpectedMatchException {
-        while(at("+") || at("-")){
-            String operator = match().lexeme();
-            Expression right = parseExp5();
-            left = parseExp4Prime(left);
-            left = new BinaryExpression(left, operator, right);
+    // Precedence climbing: folds in every operator that binds at least as tightly as loosest
+    private Expression parseExpression(int loosest) throws UnexpectedMatchException {
+        Expression left = parseUnary();
+        int level = precedence[lexemes.symbol(peek(0))];
+        while(level != 0 && level <= loosest){
+            Boolean right = rightAssociative[lexemes.symbol(peek(0))];
+            String operator = match();
+            left = new BinaryExpression(left, operator, parseExpression(right ? level : level - 1));
+            level = precedence[lexemes.symbol(peek(0))];
         }
         return left;
     }
 
-    private Expression parseExp5() throws UnexpectedMatchException {
-        Expression left = parseExp6();
-        Expression expression = parseExp5Prime(left);
-        return expression;
-    }
-
-    private Expression parseExp5Prime(Expression left) throws UnexpectedMatchException {
-        while(at("*") || at("/") || at("%")){
-            String operator = match().lexeme();
-            Expression right = parseExp6();
-            left = parseExp5Prime(left);
-            left = new BinaryExpression(left, operator, right);
+    private Expression parseUnary() throws UnexpectedMatchException {
+        int symbol = lexemes.symbol(peek(0));
+        if(symbol == NOT || symbol == NEGATE){
+            String operator = match();
+            return new UnaryExpression(operator, parseUnary());
         }
-        return left;
+        return parseExp7();
     }
 
-    private Expression parseExp6() throws UnexpectedMatchException {
-        if(!(at("!") || at("-"))){
-            Expression left = parseExp7();
-            while(at("^")){
-                String operator = match("^").lexeme();
-                Expression right = parseExp6();
-                left = new BinaryExpression(left, operator, right);
-            }
-            return left;
-        } else {
-            String operator = match().lexeme();
-            Expression right = parseExp7();
-            right = new UnaryExpression(operator, right);
-            return right;
-        }
-    }
+    private static final int NOT = TokenTable.symbol("!");
+    private static final int NEGATE = TokenTable.symbol("-");
 
     private Expression parseExp7() throws UnexpectedMatchException {
         Expression left = parseExp8();
@@ -556,7 +746,7 @@ public class Parser {
             return new CallExpression(left, arguments);
         } else if(at(".")){
             match(".");
-            String identifier = match("id").lexeme();
+            String identifier = match("id");
             left = parseExp7Prime(left);
             return new AccessExpression(left, identifier);
         }
@@ -565,38 +755,38 @@ public class Parser {
 
     private Expression parseExp8() throws UnexpectedMatchException {
         if(at("integer/rational")){
-            String number = match().lexeme();
+            String number = match();
             if(number.contains(".")){
                 Float result = Float.parseFloat(number);
-                return new RationalLiteral(result);
+                return interner.literal(new RationalLiteral(result));
             } else {
                 Integer result = Integer.parseInt(number);
-                return new IntegerLiteral(result);
+                return interner.literal(new IntegerLiteral(result));
             }
         } else if(at("true")){
             match("true");
-            return new BooleanLiteral(true);
+            return interner.literal(new BooleanLiteral(true));
         } else if(at("false")){
             match("false");
-            return new BooleanLiteral(false);
+            return interner.literal(new BooleanLiteral(false));
         } else if(at("string")){
-            String result = match("string").lexeme().replaceAll("\"", "");
-            return new StringLiteral(result);
+            String result = match("string").replaceAll("\"", "");
+            return interner.literal(new StringLiteral(result));
         } else if(at("self")){
             match("self");
-            return new SelfLiteral();
+            return interner.literal(new SelfLiteral());
         } else if(at("any")){
-            return new DoesNotExistLiteral(match("any").lexeme());
+            return interner.literal(new DoesNotExistLiteral(match("any")));
         } else if(at("none")){
-            return new DoesNotExistLiteral(match("none").lexeme());
+            return interner.literal(new DoesNotExistLiteral(match("none")));
         } else if(at("prototype")){
-            String prototype = match("prototype").lexeme();
-            return new PrototypeLiteral(prototype);
+            String prototype = match("prototype");
+            return interner.literal(new PrototypeLiteral(prototype));
         } else if(at("id")){
-            return new IdentifierLiteral(match("id").lexeme());
+            return interner.literal(new IdentifierLiteral(match("id")));
         } else if(at("#")){
             match("#");
-            String prototype = match("prototype").lexeme();
+            String prototype = match("prototype");
             match("#");
             if(at("||")){
                 ArrayList<Expression> contents = new ArrayList<Expression>();
@@ -629,19 +819,93 @@ public class Parser {
             match(")");
             return expression;
         }
-        return null;
+        throw unexpected("expression");
     }
 
     private Optional<PipelinesDec> parsePipelinesDec() throws UnexpectedMatchException {
-        return null;
+        if(hasMore() && at("Pipelines")){
+            ArrayList<PipeExpression> pipes = new ArrayList<PipeExpression>();
+            match("Pipelines");
+            openBlock();
+            whiteSpaceRemover();
+            while(!atBlockEnd()){
+                parsePipeInto(pipes);
+                whiteSpaceRemover();
+            }
+            closeBlock();
+            return Optional.of(new PipelinesDec(pipes));
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    private void parsePipeInto(ArrayList<PipeExpression> pipes) throws UnexpectedMatchException {
+        try {
+            if(!(parsePipeExpression() instanceof PipeExpression pipe)){
+                throw unexpected("-->");
+            }
+            pipes.add(pipe);
+        } catch (UnexpectedMatchException e){
+            if(errors == null){
+                throw e;
+            }
+            errors.add(e);
+            synchronize();
+        }
     }
 
+    /*
+     * a, b, ... operator target, where the target is either an identifier ending the pipe or
+     * another pipe whose inputs name what the operator feeds into. A factory always feeds a
+     * whole pipe, its inputs naming each instance the factory hands it.
+     */
+    private Expression parsePipeExpression() throws UnexpectedMatchException {
+        ArrayList<Expression> inputs = new ArrayList<Expression>();
+        inputs.add(parseExp8());
+        while(at(",")){
+            match(",");
+            inputs.add(parseExp8());
+        }
+        if(!atPipeOperator()){
+            if(inputs.size() == 1 && inputs.get(0) instanceof IdentifierLiteral){
+                return inputs.get(0);
+            }
+            throw unexpected("-->");
+        }
+        Boolean factory = at("--<(");
+        String operator = match();
+        Expression target = parsePipeExpression();
+        if(factory && !(target instanceof PipeExpression)){
+            throw unexpected("-->");
+        }
+        return new PipeExpression(inputs, operator, target);
+    }
+
+    // -->, --<( and the drains and casters, the only operators the lexer spells out of the source
+    private Boolean atPipeOperator() throws UnexpectedMatchException {
+        int next = peek(0);
+        int symbol = lexemes.symbol(next);
+        return symbol == INJECTION || symbol == FACTORY || (symbol == 0 && lexemes.category(next) == TokenTable.OPERATOR);
+    }
+
+    private static final int INJECTION = TokenTable.symbol("-->");
+    private static final int FACTORY = TokenTable.symbol("--<(");
+
     @Override
     public String toString(){
         return this.root.toString();
     }
 
     public static void main(String[] args){
+        if(args.length > 0){
+            try {
+                System.out.println(new Parser(new Lexer(Path.of(args[0]))));
+            } catch (Exception e){
+                System.out.println(e.toString());
+            }
+            return;
+        }
+
         String varDecs = """
 
             Definitions {
@@ -786,7 +1050,7 @@ public class Parser {
         
         Lexer croccy4 = new Lexer(programFinal);
         try {
-            Parser chompy = new Parser(croccy4.tokens);
+            Parser chompy = new Parser(croccy4);
             System.out.println(chompy);
         } catch (Exception e){
             System.out.println(e.toString());
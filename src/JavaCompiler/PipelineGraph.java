@@ -0,0 +1,274 @@
+package JavaCompiler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import JavaCompiler.Core.*;
+import JavaCompiler.Parser.UnexpectedMatchException;
+
+/*
+ * The Pipelines block lowered to a dataflow graph. Every pipe starts at a source node holding
+ * its input expressions, and every operator on it becomes a stage node that takes the values
+ * of the node before it, does what the operator says to them and pushes the results into its
+ * receivers: the functions or names the operator points at. Nodes behind a factory sit in its
+ * region and are run once for every instance the factory hands out. Nodes are numbered so
+ * that every node comes after the nodes it consumes, and nothing flows between pipes, so a
+ * scheduler can start every pipe at once and every stage as soon as its inputs have values.
+ */
+class PipelineGraph {
+
+    enum Kind { SOURCE, INJECTION, DRAIN, CASTER, FACTORY }
+
+    // What calling a receiver costs: cheap enough to fuse, worth running in parallel, or waiting on something outside
+    enum Cost { CHEAP, EXPENSIVE, BLOCKING }
+
+    // Stages run as one, handing values straight from one to the next; parallel when a worker pool should run it
+    record Segment(List<Integer> nodes, boolean parallel) {
+        boolean factory(PipelineGraph graph){
+            return nodes.size() == 1 && graph.node(nodes.get(0)).kind() == Kind.FACTORY;
+        }
+    }
+
+    // details are the attributes a drain takes or the type a caster casts to, by the name PlumbRuntime.cast knows it by
+    record Node(int id, Kind kind, int pipe, String operator, List<String> details, ArrayList<Expression> receivers, int[] inputs, int region) {
+        @Override
+        public String toString(){
+            String from = inputs.length == 0 ? "" : " <- " + Arrays.toString(inputs);
+            String in = region < 0 ? "" : " in " + region;
+            return id + " " + kind + (operator == null ? "" : " " + operator) + " " + receivers + from + in;
+        }
+    }
+
+    private final ArrayList<Node> nodes = new ArrayList<Node>();
+    private final ArrayList<Integer> sources = new ArrayList<Integer>();
+    private final ArrayList<ArrayList<Integer>> successors = new ArrayList<ArrayList<Integer>>();
+
+    static PipelineGraph of(PipelinesDec pipelines){
+        PipelineGraph graph = new PipelineGraph();
+        for(PipeExpression pipe : pipelines.pipes()){
+            graph.lower(pipe, graph.sources.size());
+        }
+        return graph;
+    }
+
+    // Walks one pipe from its inputs to the identifier it ends in
+    private void lower(PipeExpression pipe, int index){
+        int upstream = add(Kind.SOURCE, index, null, List.of(), pipe.inputs(), new int[0], -1);
+        sources.add(upstream);
+        int region = -1;
+        PipeExpression stage = pipe;
+        while(stage != null){
+            PipeExpression next = stage.target() instanceof PipeExpression rest ? rest : null;
+            ArrayList<Expression> receivers = next != null ? next.inputs() : new ArrayList<Expression>(List.of(stage.target()));
+            Kind kind = kind(stage.operator());
+            upstream = add(kind, index, stage.operator(), details(kind, stage.operator()), receivers, new int[]{upstream}, region);
+            if(kind == Kind.FACTORY){
+                region = upstream;
+            }
+            stage = next;
+        }
+    }
+
+    private int add(Kind kind, int pipe, String operator, List<String> details, ArrayList<Expression> receivers, int[] inputs, int region){
+        int id = nodes.size();
+        nodes.add(new Node(id, kind, pipe, operator, details, receivers, inputs, region));
+        successors.add(new ArrayList<Integer>());
+        for(int input : inputs){
+            successors.get(input).add(id);
+        }
+        return id;
+    }
+
+    private static Kind kind(String operator){
+        if(operator.equals("-->")){
+            return Kind.INJECTION;
+        } else if(operator.equals("--<(")){
+            return Kind.FACTORY;
+        } else if(operator.startsWith("-(")){
+            return Kind.CASTER;
+        } else {
+            return Kind.DRAIN;
+        }
+    }
+
+    // -a-b-> drains a and b, -(TYPE)-> casts to TYPE
+    private static List<String> details(Kind kind, String operator){
+        return switch(kind){
+            case DRAIN -> List.of(operator.substring(1, operator.length() - 2).split("-"));
+            case CASTER -> List.of(castName(operator.substring(2, operator.length() - 3)));
+            default -> List.of();
+        };
+    }
+
+    // The name PlumbRuntime.cast knows the type spelled type in the source by
+    private static String castName(String type){
+        return switch(type){
+            case "INT" -> BasePrototype.INT.name();
+            case "RAT" -> BasePrototype.RAT.name();
+            case "STR" -> BasePrototype.STR.name();
+            case "BOOL" -> BasePrototype.BOOL.name();
+            case "DNE" -> BasePrototype.DNE.name();
+            default -> type;
+        };
+    }
+
+    /*
+     * Groups the stages of a pipe into segments, each of which becomes a single task: a queue
+     * between two stages only pays off when they do not run in lockstep. Until the first
+     * factory there is only ever one item, so every stage up to it is one segment. Behind it,
+     * every factory is a segment of its own, as it turns one item into many, and a stage that
+     * blocks is one too, so the rest of the pipe keeps going while it waits. Everything else is
+     * stateless and fuses with its neighbours, and a segment with an expensive stage in it runs
+     * in parallel. cost tells what calling a receiver costs; casters and drains are cheap.
+     */
+    List<Segment> fuse(int pipe, Function<String, Cost> cost){
+        ArrayList<Segment> segments = new ArrayList<Segment>();
+        ArrayList<Integer> current = new ArrayList<Integer>();
+        boolean expensive = false;
+        boolean behindFactory = false;
+        for(int id = sources.get(pipe); ; ){
+            List<Integer> after = successors(id);
+            if(after.isEmpty()){
+                break;
+            }
+            id = after.get(0);
+            Node node = node(id);
+            Cost stage = Cost.CHEAP;
+            for(Expression receiver : node.kind() == Kind.FACTORY ? List.<Expression>of() : node.receivers()){
+                Cost receiverCost = cost.apply(receiverName(receiver));
+                stage = receiverCost.compareTo(stage) > 0 ? receiverCost : stage;
+            }
+            if(node.kind() == Kind.FACTORY || (behindFactory && stage == Cost.BLOCKING)){
+                if(!current.isEmpty()){
+                    segments.add(new Segment(current, expensive));
+                    current = new ArrayList<Integer>();
+                    expensive = false;
+                }
+                segments.add(new Segment(List.of(id), false));
+                behindFactory |= node.kind() == Kind.FACTORY;
+            } else {
+                current.add(id);
+                expensive |= behindFactory && stage == Cost.EXPENSIVE;
+            }
+        }
+        if(!current.isEmpty()){
+            segments.add(new Segment(current, expensive));
+        }
+        return segments;
+    }
+
+    /* Lowering Section */
+
+    // What a backend emits for a stage, where V is however it holds a value: each method emits one step and gives back where its result is
+    interface Target<V> {
+        V cast(V value, String type);
+        V attribute(V instance, String attribute);
+        V call(String receiver, List<V> arguments);
+        // How many arguments receiver takes, -1 for any number
+        int arity(String receiver);
+    }
+
+    /*
+     * Lowers a stage other than a source or factory through target. A caster casts every
+     * value, and a drain takes each of its attributes from the one instance it gets, or the
+     * i-th attribute from the i-th instance. The values are then pushed into every receiver,
+     * all of them in one call when it takes that many or in one call each when it takes a
+     * single one, and what the calls return, in order, are the values of the next stage.
+     */
+    static <V> List<V> stage(Node node, List<V> values, Target<V> target){
+        List<V> pushed = values;
+        if(node.kind() == Kind.CASTER){
+            pushed = new ArrayList<V>();
+            for(V value : values){
+                pushed.add(target.cast(value, node.details().get(0)));
+            }
+        } else if(node.kind() == Kind.DRAIN){
+            List<String> drained = node.details();
+            if(values.size() != 1 && values.size() != drained.size()){
+                throw new IllegalArgumentException(node.operator() + " drains " + drained.size() + " attributes from " + values.size() + " instances");
+            }
+            pushed = new ArrayList<V>();
+            for(int i = 0; i < drained.size(); i++){
+                pushed.add(target.attribute(values.get(values.size() == 1 ? 0 : i), drained.get(i)));
+            }
+        }
+        ArrayList<V> results = new ArrayList<V>();
+        for(Expression receiver : node.receivers()){
+            String name = receiverName(receiver);
+            int arity = target.arity(name);
+            if(arity < 0 || arity == pushed.size()){
+                results.add(target.call(name, pushed));
+            } else if(arity == 1){
+                for(V value : pushed){
+                    results.add(target.call(name, List.of(value)));
+                }
+            } else {
+                throw new IllegalArgumentException(name + " takes " + arity + " arguments, not the " + pushed.size() + " the pipe pushes");
+            }
+        }
+        return results;
+    }
+
+    static String receiverName(Expression receiver){
+        if(receiver instanceof IdentifierLiteral identifier){
+            return identifier.value();
+        } else if(receiver instanceof PrototypeLiteral prototype){
+            return prototype.value();
+        }
+        throw new IllegalArgumentException("Unsupported object type: " + receiver.getClass().getName());
+    }
+
+    List<Node> nodes(){
+        return nodes;
+    }
+
+    Node node(int id){
+        return nodes.get(id);
+    }
+
+    // The source node of every pipe, in the order the pipes were written
+    List<Integer> sources(){
+        return sources;
+    }
+
+    List<Integer> successors(int id){
+        return successors.get(id);
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder();
+        for(Node node : nodes){
+            builder.append(node).append("\n");
+        }
+        return builder.toString();
+    }
+
+    public static void main(String[] args) throws UnexpectedMatchException, IOException {
+        Parser parser;
+        if(args.length > 0){
+            parser = new Parser(new Lexer(Path.of(args[0])));
+        } else {
+            String program = """
+                Pipelines {
+                    l1, "p" --> f -(INT)-> g -h-i-> k
+                    INPUT --<( a -(STR)-> capitilize --> print
+                }
+                """;
+            parser = new Parser(new Lexer(program));
+        }
+        parser.root.pipeline().ifPresent(pipelines -> {
+            PipelineGraph graph = PipelineGraph.of(pipelines);
+            System.out.print(graph);
+            // Without the program's definitions at hand, print blocks and everything else is taken as expensive
+            for(int pipe = 0; pipe < graph.sources().size(); pipe++){
+                System.out.println("pipe " + pipe + " " + graph.fuse(pipe, name -> name.equals("print") ? Cost.BLOCKING : Cost.EXPENSIVE));
+            }
+        });
+    }
+
+}
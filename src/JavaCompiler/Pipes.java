@@ -0,0 +1,209 @@
+package JavaCompiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/*
+ * Runs the stages of one pipe, which the Java source backend hands over from inside the task
+ * the Scheduler runs the pipe as. Every operator is a stage, and stream runs each stage as a
+ * task of its own with a bounded StageQueue to the next, so a pipe over many instances streams
+ * them through in constant memory with every stage busy at once. A factory stage hands each
+ * instance on by itself, and a parallel stage spreads what it takes in over the Scheduler's
+ * pool, on the lane of its pipe. plumb.ordered=false lets a parallel stage hand results on in
+ * the order they finish instead of the order they came in.
+ *
+ * Items cross from one stage to the next in batches, see Batcher, whose size adapts to the
+ * load between plumb.batch.min and plumb.batch.max items; plumb.linger is how many
+ * microseconds an item may wait for its batch to fill before it goes out anyway. plumb.queue
+ * is the capacity of every queue, in batches. plumb.quantum is about how many microseconds a
+ * parallel stage keeps a worker busy with one task before the Scheduler may give it to
+ * another pipe.
+ */
+public class Pipes {
+
+    static final boolean ORDERED = Boolean.parseBoolean(System.getProperty("plumb.ordered", "true"));
+    static final int QUEUE_CAPACITY = Integer.getInteger("plumb.queue", 64);
+    static final int BATCH_MIN = Integer.getInteger("plumb.batch.min", 1);
+    static final int BATCH_MAX = Integer.getInteger("plumb.batch.max", 256);
+    static final long LINGER_NANOS = Long.getLong("plumb.linger", 1000) * 1000;
+    static final long QUANTUM_NANOS = Long.getLong("plumb.quantum", 100) * 1000;
+
+    // Chunks in flight per worker, enough to keep every worker busy while the oldest is handed on
+    private static final int WINDOW_PER_WORKER = 4;
+
+    enum Kind { MAP, PARALLEL, FACTORY }
+
+    // body takes the values of one item and returns those of the item it hands on
+    public record Stage(Kind kind, Function<Object[], Object[]> body) {}
+
+    public static Stage map(Function<Object[], Object[]> body){
+        return new Stage(Kind.MAP, body);
+    }
+
+    public static Stage parallel(Function<Object[], Object[]> body){
+        return new Stage(Kind.PARALLEL, body);
+    }
+
+    // Hands on every instance of the values it takes, one at a time
+    public static Stage factory(){
+        return new Stage(Kind.FACTORY, null);
+    }
+
+    /*
+     * Runs one pipe: values go into the first stage, and everything each stage returns goes
+     * into the next through a queue of its own. Every stage but the last gets a thread, the
+     * last runs on this one, and parallel stages get the pool on this thread's lane. When a
+     * stage fails every queue is aborted, so the stages around it stop rather than wait on it
+     * forever, and the failure is rethrown here once they have.
+     */
+    public static void stream(Object[] values, Stage... stages){
+        if(stages.length == 0){
+            return;
+        }
+        StageQueue[] queues = new StageQueue[stages.length];
+        for(int i = 0; i < queues.length; i++){
+            queues[i] = new StageQueue(QUEUE_CAPACITY);
+        }
+        queues[0].put(new Object[][]{values});
+        queues[0].close();
+        Scheduler.Lane lane = Scheduler.lane();
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        ArrayList<Future<?>> running = new ArrayList<Future<?>>(stages.length - 1);
+        for(int i = 0; i < stages.length - 1; i++){
+            int stage = i;
+            running.add(Scheduler.threads.submit(() -> run(stages[stage], queues[stage], queues[stage + 1], lane, queues, failure)));
+        }
+        run(stages[stages.length - 1], queues[stages.length - 1], null, lane, queues, failure);
+        Scheduler.joinAll(running);
+        Scheduler.rethrow(failure.get());
+    }
+
+    // Runs stage over everything in comes with, handing the results to out unless it is the last
+    private static void run(Stage stage, StageQueue in, StageQueue out, Scheduler.Lane lane, StageQueue[] queues, AtomicReference<Throwable> failure){
+        try {
+            Batcher batcher = new Batcher(out, BATCH_MIN, BATCH_MAX, LINGER_NANOS);
+            switch(stage.kind()){
+                case MAP -> each(in, batcher, item -> batcher.add(stage.body().apply(item)));
+                case FACTORY -> each(in, batcher, item -> PlumbRuntime.instances(item, instance -> batcher.add(new Object[]{instance})));
+                case PARALLEL -> fanOut(in, stage.body(), batcher, lane, lane.parallelism(), ORDERED);
+            }
+            batcher.flush();
+            if(out != null){
+                out.close();
+            }
+        } catch(CancellationException e){
+            // Another stage failed and aborted the queues, its failure is the one that counts
+        } catch(Throwable e){
+            failure.compareAndSet(null, e);
+            for(StageQueue queue : queues){
+                queue.abort();
+            }
+        }
+    }
+
+    // Takes every item in comes with, sending on what batcher holds whenever in runs dry
+    private static void each(StageQueue in, Batcher batcher, Consumer<Object[]> body){
+        for(Object[][] batch = in.take(batcher.patience()); batch != null; batch = in.take(batcher.patience())){
+            for(Object[] item : batch){
+                body.accept(item);
+            }
+            // A LINGERED batch is empty and comes straight here
+            if(in.isEmpty()){
+                batcher.idle();
+            }
+        }
+    }
+
+    /*
+     * A parallel stage: runs body over the items coming in on up to parallelism workers at
+     * once, through lane, and hands on what it returns. Every batch that comes in is split into
+     * chunks by what its items have cost so far, see chunk, and a chunk is only submitted once
+     * there is room in the window, so only a window's worth are in flight at a time. While
+     * nothing is waiting to come in, finished chunks are handed on rather than held back
+     * behind the next batch. Ordered, results are handed on in the order their items came in;
+     * unordered, finished chunks go first.
+     */
+    static void fanOut(StageQueue in, Function<Object[], Object[]> body, Batcher out, Scheduler.Lane lane, int parallelism, boolean ordered){
+        int window = Math.max(1, parallelism) * WINDOW_PER_WORKER;
+        ArrayDeque<ForkJoinTask<Object[][]>> running = new ArrayDeque<ForkJoinTask<Object[][]>>(window);
+        // Nanoseconds per item in the last chunk done, nothing is known to be cheap until it has been timed
+        AtomicLong cost = new AtomicLong(Long.MAX_VALUE);
+        try {
+            while(true){
+                if(!running.isEmpty() && (running.size() == window || in.isEmpty())){
+                    finish(next(running, ordered), out);
+                    continue;
+                }
+                if(in.isEmpty()){
+                    out.idle();
+                }
+                Object[][] batch = in.take(out.patience());
+                if(batch == null){
+                    break;
+                }
+                int size = chunk(batch.length, parallelism, cost.get());
+                for(int from = 0; from < batch.length; from += size){
+                    if(running.size() == window){
+                        finish(next(running, ordered), out);
+                    }
+                    Object[][] chunk = Arrays.copyOfRange(batch, from, Math.min(batch.length, from + size));
+                    running.add(Scheduler.submit(lane, ForkJoinTask.adapt(() -> {
+                        long start = System.nanoTime();
+                        for(int i = 0; i < chunk.length; i++){
+                            chunk[i] = body.apply(chunk[i]);
+                        }
+                        cost.set(Math.max(1, (System.nanoTime() - start) / chunk.length));
+                        return chunk;
+                    })));
+                }
+            }
+            while(!running.isEmpty()){
+                finish(next(running, ordered), out);
+            }
+        } finally {
+            // After a failure nothing more is handed on, but nothing is left running behind the stage either
+            running.forEach(task -> task.cancel(false));
+            running.forEach(task -> task.quietlyJoin());
+        }
+    }
+
+    /*
+     * Items per chunk out of a batch of items that cost about cost nanoseconds each: a full
+     * window of chunks, so the batch spreads over every worker a few chunks each, and no more
+     * than a quantum's worth, so a worker is never held longer than that by one pipe while
+     * another waits. Batches are only there to spare the queue, how big they are must not make
+     * tasks any bigger.
+     */
+    static int chunk(int items, int parallelism, long cost){
+        int spread = Math.max(1, items / (Math.max(1, parallelism) * WINDOW_PER_WORKER));
+        return (int) Math.max(1, Math.min(spread, QUANTUM_NANOS / cost));
+    }
+
+    // The oldest chunk, or unordered the first one found done
+    private static ForkJoinTask<Object[][]> next(ArrayDeque<ForkJoinTask<Object[][]>> running, boolean ordered){
+        if(!ordered){
+            for(ForkJoinTask<Object[][]> task : running){
+                if(task.isDone()){
+                    running.remove(task);
+                    return task;
+                }
+            }
+        }
+        return running.poll();
+    }
+
+    private static void finish(ForkJoinTask<Object[][]> task, Batcher out){
+        for(Object[] values : task.join()){
+            out.add(values);
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package JavaCompiler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import JavaCompiler.Parser.UnexpectedMatchException;
+
+/*
+ * The command line: plumb run file.plumb [--parallelism=N] [--priority=PIPE:WEIGHT...] [INPUT...]
+ * compiles file through the Java source backend and runs it in this process, with nothing
+ * written to disk. The flags go to the program's Scheduler along with INPUT.
+ */
+public class Plumb {
+
+    public static void main(String[] args) throws UnexpectedMatchException, IOException {
+        if(args.length < 2 || !args[0].equals("run")){
+            System.err.println("Usage: plumb run file.plumb [--parallelism=N] [--priority=PIPE:WEIGHT...] [INPUT...]");
+            System.exit(2);
+        }
+        SourceRunner.run(new Parser(new Lexer(Path.of(args[1]))).root, Arrays.copyOfRange(args, 2, args.length));
+    }
+
+}
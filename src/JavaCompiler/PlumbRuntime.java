@@ -0,0 +1,300 @@
+package JavaCompiler;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/*
+ * What compiled Plumb calls into at run time. Every Plumb value is a plain object: INT is an
+ * Integer, RAT a Float, STR a String, BOOL a Boolean, lists are ArrayLists, maps are
+ * LinkedHashMaps keyed by strings and DNE is null. Operators take and return those objects,
+ * so generated code never needs to know the type of anything it passes along.
+ */
+public class PlumbRuntime {
+
+    /* Operator Section */
+
+    public static boolean truthy(Object value){
+        if(value instanceof Boolean b){
+            return b;
+        } else if(value instanceof Integer i){
+            return i != 0;
+        } else if(value instanceof Float f){
+            return f != 0;
+        } else if(value instanceof String s){
+            return !s.isEmpty();
+        } else if(value instanceof Collection<?> c){
+            return !c.isEmpty();
+        } else if(value instanceof Map<?, ?> m){
+            return !m.isEmpty();
+        }
+        return value != null;
+    }
+
+    public static Object add(Object left, Object right){
+        if(left instanceof String || right instanceof String){
+            return String.valueOf(left) + right;
+        } else if(left instanceof Integer a && right instanceof Integer b){
+            return a + b;
+        }
+        return number(left, "+").floatValue() + number(right, "+").floatValue();
+    }
+
+    public static Object subtract(Object left, Object right){
+        if(left instanceof Integer a && right instanceof Integer b){
+            return a - b;
+        }
+        return number(left, "-").floatValue() - number(right, "-").floatValue();
+    }
+
+    public static Object multiply(Object left, Object right){
+        if(left instanceof Integer a && right instanceof Integer b){
+            return a * b;
+        }
+        return number(left, "*").floatValue() * number(right, "*").floatValue();
+    }
+
+    public static Object divide(Object left, Object right){
+        if(left instanceof Integer a && right instanceof Integer b){
+            return a / b;
+        }
+        return number(left, "/").floatValue() / number(right, "/").floatValue();
+    }
+
+    public static Object modulo(Object left, Object right){
+        if(left instanceof Integer a && right instanceof Integer b){
+            return a % b;
+        }
+        return number(left, "%").floatValue() % number(right, "%").floatValue();
+    }
+
+    public static Object power(Object left, Object right){
+        double result = Math.pow(number(left, "^").doubleValue(), number(right, "^").doubleValue());
+        if(left instanceof Integer && right instanceof Integer){
+            return (int) result;
+        }
+        return (float) result;
+    }
+
+    // ^ for the source backend, whose operands are typed: INT ^ INT is an INT, anything with a RAT a RAT
+    public static int pow(int left, int right){
+        return (int) Math.pow(left, right);
+    }
+
+    public static float pow(float left, float right){
+        return (float) Math.pow(left, right);
+    }
+
+    public static Object negate(Object value){
+        if(value instanceof Integer i){
+            return -i;
+        }
+        return -number(value, "-").floatValue();
+    }
+
+    public static Object not(Object value){
+        return !truthy(value);
+    }
+
+    public static Object less(Object left, Object right){
+        return compare(left, right) < 0;
+    }
+
+    public static Object lessEqual(Object left, Object right){
+        return compare(left, right) <= 0;
+    }
+
+    public static Object greater(Object left, Object right){
+        return compare(left, right) > 0;
+    }
+
+    public static Object greaterEqual(Object left, Object right){
+        return compare(left, right) >= 0;
+    }
+
+    // 1 == 1.0, as an INT and a RAT holding the same number are the same number
+    public static Object equal(Object left, Object right){
+        if(left instanceof Number a && right instanceof Number b){
+            return a.floatValue() == b.floatValue();
+        }
+        return Objects.equals(left, right);
+    }
+
+    public static Object notEqual(Object left, Object right){
+        return !(Boolean) equal(left, right);
+    }
+
+    private static int compare(Object left, Object right){
+        if(left instanceof String a && right instanceof String b){
+            return a.compareTo(b);
+        }
+        return Float.compare(number(left, "comparison").floatValue(), number(right, "comparison").floatValue());
+    }
+
+    private static Number number(Object value, String operator){
+        if(value instanceof Number n){
+            return n;
+        }
+        throw new IllegalArgumentException("Cannot use " + describe(value) + " with " + operator);
+    }
+
+    /* Value Section */
+
+    public static Object list(Object[] items){
+        return new ArrayList<Object>(Arrays.asList(items));
+    }
+
+    // Keys and values alternate, as the map literal spells them
+    public static Object map(Object[] entries){
+        LinkedHashMap<Object, Object> map = new LinkedHashMap<Object, Object>();
+        for(int i = 0; i < entries.length; i += 2){
+            map.put(entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+
+    // INPUT, the command line arguments as a Plumb list
+    public static Object input(String[] args){
+        return new ArrayList<Object>(Arrays.asList((Object[]) args));
+    }
+
+    public static Object index(Object target, Object index){
+        if(target instanceof List<?> list){
+            return list.get((Integer) index);
+        } else if(target instanceof Map<?, ?> map){
+            return map.get(index);
+        } else if(target instanceof String s){
+            return String.valueOf(s.charAt((Integer) index));
+        }
+        throw new IllegalArgumentException("Cannot index " + describe(target));
+    }
+
+    public static Object cast(Object value, String type){
+        return switch(type){
+            case "Integer" -> value instanceof Number n ? (Object) n.intValue() : Integer.valueOf(String.valueOf(value).trim());
+            case "Rational" -> value instanceof Number n ? (Object) n.floatValue() : Float.valueOf(String.valueOf(value).trim());
+            case "String" -> String.valueOf(value);
+            case "Boolean" -> truthy(value);
+            default -> value;
+        };
+    }
+
+    /* Object Section */
+
+    public static Object attribute(Object target, String name){
+        if(target == null){
+            throw new IllegalArgumentException("Cannot read " + name + " of DNE");
+        }
+        Field field = field(target.getClass(), name);
+        if(field == null){
+            throw new IllegalArgumentException(describe(target) + " has no attribute " + name);
+        }
+        try {
+            return field.get(target);
+        } catch(IllegalAccessException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The source backend's classes are not public, so their fields are opened up to be read from here
+    private static Field field(Class<?> type, String name){
+        for(Class<?> c = type; c != null; c = c.getSuperclass()){
+            try {
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch(NoSuchFieldException e){
+                continue;
+            }
+        }
+        return null;
+    }
+
+    // Lists and maps answer to their Plumb names, prototypes to the methods they declare
+    public static Object invoke(Object target, String name, Object[] args){
+        if(target instanceof List<?> list){
+            @SuppressWarnings("unchecked")
+            List<Object> items = (List<Object>) list;
+            switch(name){
+                case "append": items.add(args[0]); return null;
+                case "remove": return args[0] instanceof Integer i ? items.remove((int) i) : items.remove(args[0]);
+                case "search": return items.indexOf(args[0]);
+                case "length": return items.size();
+                default: break;
+            }
+        } else if(target instanceof Map<?, ?> map){
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> entries = (Map<Object, Object>) map;
+            switch(name){
+                case "add": entries.put(args[0], args[1]); return null;
+                case "remove": return entries.remove(args[0]);
+                case "length": return entries.size();
+                default: break;
+            }
+        } else if(target != null){
+            for(Method method : target.getClass().getMethods()){
+                if(method.getName().equals(name) && method.getParameterCount() == args.length){
+                    try {
+                        return method.invoke(target, args);
+                    } catch(IllegalAccessException e){
+                        throw new IllegalStateException(e);
+                    } catch(InvocationTargetException e){
+                        if(e.getCause() instanceof RuntimeException cause){
+                            throw cause;
+                        }
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException(describe(target) + " has no method " + name + " taking " + args.length);
+    }
+
+    public static Object print(Object[] values){
+        StringBuilder line = new StringBuilder();
+        for(int i = 0; i < values.length; i++){
+            line.append(i == 0 ? "" : " ").append(values[i]);
+        }
+        System.out.println(line);
+        return null;
+    }
+
+    /* Pipe Section */
+
+    // What a factory hands out: every element of every list or map entry, anything else as is
+    public static List<Object> instances(Object[] values){
+        ArrayList<Object> instances = new ArrayList<Object>();
+        instances(values, instances::add);
+        return instances;
+    }
+
+    // The same instances, handed to each one by one straight out of the lists and maps
+    static void instances(Object[] values, Consumer<Object> each){
+        for(Object value : values){
+            if(value instanceof Collection<?> c){
+                for(Object instance : c){
+                    each.accept(instance);
+                }
+            } else if(value instanceof Map<?, ?> m){
+                for(Object entry : m.entrySet()){
+                    each.accept(entry);
+                }
+            } else {
+                each.accept(value);
+            }
+        }
+    }
+
+    private static String describe(Object value){
+        return value == null ? "DNE" : value.getClass().getSimpleName() + " " + value;
+    }
+
+}
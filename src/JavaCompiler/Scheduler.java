@@ -0,0 +1,342 @@
+package JavaCompiler;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
+/*
+ * The runtime every generated Start.main runs its Pipelines block on. Start hands its command
+ * line to start, which takes the scheduler's own flags off the front and leaves the rest as
+ * INPUT, then gives run a task per pipe:
+ *
+ *     --parallelism=N        workers in the pool, or the PLUMB_PARALLELISM environment variable
+ *     --priority=PIPE:WEIGHT the share of the workers the PIPEth pipe, counted from 1, gets when
+ *                            they are contended, 1 by default, or PLUMB_PRIORITY=PIPE:WEIGHT,...
+ *
+ * Without either, parallelism falls back on the plumb.parallelism property and then the number
+ * of processors. A "--" ends the flags, so INPUT can start with one.
+ *
+ * Pipes and stages, which spend their time blocked on each other, get a thread of their own:
+ * a virtual thread where the running Java has them, a pooled platform thread where it does not.
+ * The work of parallel stages goes to a work stealing pool of the scheduler's own, shared by
+ * every pipe of the program through a lane per pipe, so two programs in one process neither
+ * resize nor queue behind each other. Each time a worker is free it runs the next task of the
+ * lane that has had the least of the pool for its weight, so a pipe fanning out over a million
+ * instances only ever gets its share, and a pipe with a handful of items still gets its turn
+ * right away.
+ */
+public class Scheduler {
+
+    // Work is counted in turns of STRIDE / weight, so no weight can be more than this
+    private static final int STRIDE = 1 << 20;
+
+    private static final Method virtualThreadExecutor = virtualThreadExecutor();
+
+    // Executors.newVirtualThreadPerTaskExecutor, looked up by name as this has to build on Java 17 too
+    private static Method virtualThreadExecutor(){
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch(NoSuchMethodException e){
+            return null;
+        }
+    }
+
+    static final ExecutorService threads = threadPerTask();
+
+    static ExecutorService threadPerTask(){
+        if(virtualThreadExecutor != null){
+            try {
+                return (ExecutorService) virtualThreadExecutor.invoke(null);
+            } catch(ReflectiveOperationException e){
+                throw new IllegalStateException(e);
+            }
+        }
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "pipe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /* Pool Section */
+
+    // The share of its scheduler's pool one pipe gets; pass is how much of it the lane has had, in turns
+    static class Lane {
+        private final Scheduler scheduler;
+        private final int weight;
+        private final ArrayDeque<ForkJoinTask<?>> tasks = new ArrayDeque<ForkJoinTask<?>>();
+        private long pass;
+
+        Lane(Scheduler scheduler, int weight){
+            if(weight < 1 || weight > STRIDE){
+                throw new IllegalArgumentException("A pipe's weight has to be from 1 to " + STRIDE + ", not " + weight);
+            }
+            this.scheduler = scheduler;
+            this.weight = weight;
+        }
+
+        // Workers in the pool this lane's tasks run on
+        int parallelism(){
+            return scheduler.parallelism;
+        }
+    }
+
+    // Never throws, so nothing can fail before start has had a look at the flags
+    private static int defaultParallelism(){
+        return Integer.getInteger("plumb.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    // The scheduler, and the one lane, that work outside of any run goes through
+    private static final Scheduler outside = new Scheduler(new String[0], Map.of(), defaultParallelism());
+    private static final Lane shared = new Lane(outside, 1);
+    private static final ThreadLocal<Lane> current = new ThreadLocal<Lane>();
+
+    // Workers for work outside of any run
+    static int parallelism(){
+        return outside.parallelism;
+    }
+
+    // The lane of the pipe this thread is running, or the shared one outside of a pipe
+    static Lane lane(){
+        Lane lane = current.get();
+        return lane == null ? shared : lane;
+    }
+
+    /*
+     * Queues task on lane and has a worker of the lane's scheduler take a turn for it. The
+     * worker that takes the turn runs whichever task is next by fairness, not necessarily
+     * this one, so a task is done once joined but may run before or after tasks submitted
+     * ahead of it on other lanes.
+     */
+    static <T> ForkJoinTask<T> submit(Lane lane, ForkJoinTask<T> task){
+        Scheduler scheduler = lane.scheduler;
+        synchronized(scheduler){
+            if(lane.tasks.isEmpty()){
+                // An idle lane gets no credit for the time it was idle
+                lane.pass = Math.max(lane.pass, scheduler.served);
+                scheduler.ready.add(lane);
+            }
+            lane.tasks.add(task);
+            scheduler.pool().execute(scheduler::turn);
+        }
+        return task;
+    }
+
+    private final int parallelism;
+    private ForkJoinPool pool;
+    // Lanes with work waiting, least served first
+    private final PriorityQueue<Lane> ready = new PriorityQueue<Lane>(Comparator.comparingLong((Lane lane) -> lane.pass));
+    // The pass of the last lane served, which a lane coming back from idle starts from
+    private long served;
+
+    private synchronized ForkJoinPool pool(){
+        if(pool == null){
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    // Lets the workers go once the tasks already queued are done; a later submit starts a new pool
+    private synchronized void shutdown(){
+        if(pool != null){
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    // Runs the next task of the least served lane; a task cancelled while it waited is skipped when its turn comes
+    private void turn(){
+        ForkJoinTask<?> task;
+        synchronized(this){
+            Lane lane = ready.poll();
+            if(lane == null){
+                return;
+            }
+            task = lane.tasks.poll();
+            served = lane.pass;
+            lane.pass += STRIDE / lane.weight;
+            if(!lane.tasks.isEmpty()){
+                ready.add(lane);
+            }
+        }
+        task.quietlyInvoke();
+    }
+
+    /* Run Section */
+
+    private final String[] input;
+    private final Map<Integer, Integer> weights;
+
+    private Scheduler(String[] input, Map<Integer, Integer> weights, int parallelism){
+        this.input = input;
+        this.weights = weights;
+        this.parallelism = parallelism;
+    }
+
+    // Takes the flags off the front of args and gives back a scheduler with a pool of its own sized by them
+    public static Scheduler start(String[] args){
+        int size = -1;
+        HashMap<Integer, Integer> weights = new HashMap<Integer, Integer>();
+        int i = 0;
+        for(; i < args.length && args[i].startsWith("--"); i++){
+            String flag = args[i];
+            String value = null;
+            int equals = flag.indexOf('=');
+            if(equals >= 0){
+                value = flag.substring(equals + 1);
+                flag = flag.substring(0, equals);
+            }
+            if(flag.equals("--")){
+                i++;
+                break;
+            } else if(!flag.equals("--parallelism") && !flag.equals("--priority")){
+                // Not one of ours, so it is the start of INPUT
+                break;
+            }
+            if(value == null){
+                if(++i == args.length){
+                    throw new IllegalArgumentException(flag + " needs a value");
+                }
+                value = args[i];
+            }
+            if(flag.equals("--parallelism")){
+                size = parallelism(value);
+            } else {
+                priority(value, weights);
+            }
+        }
+        // The variables are only looked at without the flags, so a bad one can always be overridden
+        if(size < 0){
+            String variable = System.getenv("PLUMB_PARALLELISM");
+            size = variable == null ? defaultParallelism() : parallelism(variable);
+        }
+        if(weights.isEmpty()){
+            String variable = System.getenv("PLUMB_PRIORITY");
+            if(variable != null && !variable.isBlank()){
+                for(String priority : variable.split(",")){
+                    priority(priority.trim(), weights);
+                }
+            }
+        }
+        return new Scheduler(Arrays.copyOfRange(args, i, args.length), weights, size);
+    }
+
+    private static int parallelism(String value){
+        try {
+            int size = Integer.parseInt(value.trim());
+            if(size > 0){
+                return size;
+            }
+        } catch(NumberFormatException e){
+            // Reported below like any other bad size
+        }
+        throw new IllegalArgumentException("Parallelism has to be a positive number, not " + value);
+    }
+
+    // PIPE:WEIGHT, counting pipes from 1
+    private static void priority(String value, Map<Integer, Integer> weights){
+        String[] parts = value.split(":");
+        try {
+            if(parts.length == 2){
+                int pipe = Integer.parseInt(parts[0].trim());
+                int weight = Integer.parseInt(parts[1].trim());
+                if(pipe > 0 && weight > 0 && weight <= STRIDE){
+                    weights.put(pipe, weight);
+                    return;
+                }
+            }
+        } catch(NumberFormatException e){
+            // Reported below like any other bad priority
+        }
+        throw new IllegalArgumentException("A priority is PIPE:WEIGHT with a pipe from 1 and a weight from 1 to " + STRIDE + ", not " + value);
+    }
+
+    // The command line without the scheduler's flags
+    public String[] input(){
+        return input;
+    }
+
+    /*
+     * Starts every pipe at once, each on a lane of its own weighted by its priority, and waits
+     * for all of them, even after one has failed, so no pipe is still running when main
+     * returns. The first failure is rethrown with the ones after it attached as suppressed.
+     * The pool is let go once every pipe is done.
+     */
+    public void run(Runnable... pipes){
+        ArrayList<Future<?>> running = new ArrayList<Future<?>>(pipes.length);
+        for(int i = 0; i < pipes.length; i++){
+            Runnable pipe = pipes[i];
+            Lane lane = new Lane(this, weights.getOrDefault(i + 1, 1));
+            running.add(threads.submit(() -> {
+                current.set(lane);
+                try {
+                    pipe.run();
+                } finally {
+                    current.remove();
+                }
+            }));
+        }
+        try {
+            rethrow(joinAll(running));
+        } finally {
+            shutdown();
+        }
+    }
+
+    // Waits for every task and hands back the first failure, with the later ones suppressed
+    static Throwable joinAll(List<Future<?>> running){
+        Throwable failure = null;
+        for(Future<?> task : running){
+            try {
+                join(task);
+            } catch(ExecutionException e){
+                if(failure == null){
+                    failure = e.getCause();
+                } else if(failure != e.getCause()){
+                    failure.addSuppressed(e.getCause());
+                }
+            }
+        }
+        return failure;
+    }
+
+    // Waits out an interrupt rather than leave the pipe running, and interrupts again once it is done
+    private static void join(Future<?> pipe) throws ExecutionException {
+        boolean interrupted = false;
+        while(true){
+            try {
+                pipe.get();
+                break;
+            } catch(InterruptedException e){
+                interrupted = true;
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void rethrow(Throwable failure){
+        if(failure == null){
+            return;
+        } else if(failure instanceof RuntimeException e){
+            throw e;
+        } else if(failure instanceof Error e){
+            throw e;
+        }
+        throw new IllegalStateException(failure);
+    }
+
+}
@@ -0,0 +1,92 @@
+package JavaCompiler;
+
+import java.util.Objects;
+
+/*
+ * Source text that IncrementalLexer edits in place. The characters sit in one array with a gap
+ * at the last edit, like the token table, so an edit costs its own length plus the distance
+ * the gap moves from the previous one instead of a copy of the whole file. Anything that needs
+ * the text as it was before an edit has to take a copy of it first.
+ */
+class SourceBuffer implements CharSequence {
+
+    private static final int MIN_GAP = 1024;
+
+    private char[] chars;
+    private int gapStart;
+    private int gapEnd;
+
+    SourceBuffer(CharSequence text){
+        int length = text.length();
+        chars = new char[length + MIN_GAP];
+        for(int i = 0; i < length; i++){
+            chars[i] = text.charAt(i);
+        }
+        gapStart = length;
+        gapEnd = chars.length;
+    }
+
+    // Replaces the removed characters from offset on with inserted
+    void replace(int offset, int removed, CharSequence inserted){
+        Objects.checkFromIndexSize(offset, removed, length());
+        moveGap(offset);
+        gapEnd += removed;
+        int length = inserted.length();
+        if(gapEnd - gapStart < length){
+            grow(length);
+        }
+        for(int i = 0; i < length; i++){
+            chars[gapStart++] = inserted.charAt(i);
+        }
+    }
+
+    private void moveGap(int offset){
+        if(offset < gapStart){
+            int count = gapStart - offset;
+            System.arraycopy(chars, offset, chars, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if(offset > gapStart){
+            int count = offset - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    private void grow(int needed){
+        int tail = chars.length - gapEnd;
+        char[] grown = new char[Math.max(chars.length * 2, length() + needed + MIN_GAP)];
+        System.arraycopy(chars, 0, grown, 0, gapStart);
+        System.arraycopy(chars, gapEnd, grown, grown.length - tail, tail);
+        chars = grown;
+        gapEnd = grown.length - tail;
+    }
+
+    @Override
+    public int length(){
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    // Unchecked, the lexer only ever asks inside the length it was given
+    @Override
+    public char charAt(int index){
+        return chars[index < gapStart ? index : index + gapEnd - gapStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end){
+        Objects.checkFromToIndex(start, end, length());
+        char[] copy = new char[end - start];
+        for(int i = start; i < end; i++){
+            copy[i - start] = charAt(i);
+        }
+        return new String(copy);
+    }
+
+    @Override
+    public String toString(){
+        return subSequence(0, length()).toString();
+    }
+
+}
@@ -0,0 +1,195 @@
+package JavaCompiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import JavaCompiler.Core.*;
+import JavaCompiler.Parser.UnexpectedMatchException;
+
+/*
+ * Runs a Program through the Java source backend without touching disk. The Generator's
+ * source goes to javac as a string, the class files come back into byte arrays and a
+ * MemoryClassLoader defines them. Compiled classes are kept in memory by the hash of their
+ * source, so a process that runs the same script again, like a launcher running scripts one
+ * after another, skips javac entirely. Nothing is kept across processes: every plumb run
+ * compiles its script afresh.
+ */
+class SourceRunner {
+
+    static final String START = "src.Start";
+
+    // How many compiled programs are kept before the least recently run is dropped
+    private static final int CACHE_SIZE = 256;
+
+    private static final Map<String, Map<String, byte[]>> cache = Collections.synchronizedMap(
+        new LinkedHashMap<String, Map<String, byte[]>>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, byte[]>> eldest){
+                return size() > CACHE_SIZE;
+            }
+        });
+
+    private static JavaCompiler compiler;
+    private static StandardJavaFileManager standardFiles;
+
+    static void run(Program program, String[] args){
+        run(new Generator(program).toString(), args);
+    }
+
+    static void run(String source, String[] args){
+        new MemoryClassLoader(compile(source)).run(START, args);
+    }
+
+    // The classes source compiles to, by binary name; from the cache when the same source was compiled before
+    static Map<String, byte[]> compile(String source){
+        String hash = hash(source);
+        Map<String, byte[]> classes = cache.get(hash);
+        if(classes == null){
+            classes = javac(source);
+            cache.put(hash, classes);
+        }
+        return classes;
+    }
+
+    static void clearCache(){
+        cache.clear();
+    }
+
+    private static String hash(String source){
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // javac is not safe to share between threads, so compiles take turns on the one instance
+    private static synchronized Map<String, byte[]> javac(String source){
+        if(compiler == null){
+            compiler = ToolProvider.getSystemJavaCompiler();
+            if(compiler == null){
+                throw new IllegalStateException("No Java compiler available, a JDK is needed to run the source backend");
+            }
+            standardFiles = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        }
+        HashMap<String, byte[]> classes = new HashMap<String, byte[]>();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        List<JavaFileObject> units = List.of(new Source(START, source));
+        boolean compiled = compiler.getTask(null, new MemoryFiles(standardFiles, classes), diagnostics, List.of("-proc:none"), null, units).call();
+        if(!compiled){
+            throw new IllegalArgumentException("Generated source does not compile:\n" + diagnostics.getDiagnostics().stream()
+                .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+                .map(d -> "line " + d.getLineNumber() + ": " + d.getMessage(null))
+                .collect(Collectors.joining("\n")));
+        }
+        return classes;
+    }
+
+    // One compilation unit read from a string instead of a file
+    private static class Source extends SimpleJavaFileObject {
+        private final String source;
+
+        Source(String className, String source){
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors){
+            return source;
+        }
+    }
+
+    // Hands javac byte arrays to write class files into, and everything else to the standard file manager
+    private static class MemoryFiles extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, byte[]> classes;
+
+        MemoryFiles(StandardJavaFileManager files, Map<String, byte[]> classes){
+            super(files);
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling){
+            return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind){
+                @Override
+                public OutputStream openOutputStream(){
+                    return new ByteArrayOutputStream(){
+                        @Override
+                        public void close(){
+                            classes.put(className, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    // Runs the file named first with the rest as INPUT, twice, to show what the cache saves
+    public static void main(String[] args) throws UnexpectedMatchException, IOException {
+        String source;
+        String[] input = new String[0];
+        if(args.length > 0){
+            source = new Generator(new Parser(new Lexer(Path.of(args[0]))).root).toString();
+            input = Arrays.copyOfRange(args, 1, args.length);
+        } else {
+            source = new Generator(new Parser(new Lexer("""
+                Definitions {
+                    INT a <== 7 + 2 - (-3 + 4)
+                    STR d <== "ka"
+                    d <++ "lima"
+                    STR FUNC e ( STR f, STR x ) {
+                        return f + "boom" + x
+                    }
+                    INT FUNC square ( INT n ) {
+                        return n * n
+                    }
+                    PROTO G {
+                        ATR STR h
+                        G FUNC G( STR x ){
+                            self.h <== x
+                        }
+                    }
+                    ||INT|| k <== #INT#|| 1, 2, 5, 7 ||
+                }
+                Pipelines {
+                    a, d --> print
+                    d, d --> e --> print
+                    "a sentence" --> G -h-> print
+                    k --<( x --> square --> print
+                    INPUT --> print
+                }
+                """)).root).toString();
+        }
+        for(String run : List.of("First", "Cached")){
+            long start = System.nanoTime();
+            run(source, input);
+            System.out.printf("%s run in %.2f ms%n", run, (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+}
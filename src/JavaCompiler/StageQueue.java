@@ -0,0 +1,149 @@
+package JavaCompiler;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * The bounded queue between two stages of a pipe, which carries items in the batches a Batcher
+ * gathers them into. Exactly one stage puts and exactly one
+ * takes, so a ring buffer with a read and a write counter needs no lock: each side only ever
+ * writes its own counter and reads the other's. A full queue holds the producer back until
+ * the consumer catches up, which is all the backpressure a pipe needs, and an empty one holds
+ * the consumer back. Either side waits by spinning a little, then yielding, then parking; the
+ * other side unparks it as soon as it moves, and parking has a timeout so a wakeup lost
+ * between the two can only ever cost that long.
+ */
+class StageQueue {
+
+    private static final Object END = new Object();
+    // What take hands back when its time runs out before a batch comes
+    static final Object[][] LINGERED = new Object[0][];
+    private static final int SPINS = 64;
+    private static final int YIELDS = 64;
+    private static final long PARK_NANOS = 100_000;
+
+    private final Object[] buffer;
+    private final int mask;
+    // The next slot to read and to write; they only grow, so their difference is the size
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+    private volatile boolean aborted;
+
+    // capacity is rounded up to a power of two
+    StageQueue(int capacity){
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        buffer = new Object[size];
+        mask = size - 1;
+    }
+
+    void put(Object[][] batch){
+        offer(batch);
+    }
+
+    // Tells the consumer nothing more is coming
+    void close(){
+        offer(END);
+    }
+
+    // Makes every put and take from now on, and those waiting, throw, as the pipe has failed
+    void abort(){
+        aborted = true;
+        LockSupport.unpark(waitingProducer);
+        LockSupport.unpark(waitingConsumer);
+    }
+
+    private void offer(Object item){
+        long t = tail.get();
+        for(int waited = 0; t - head.get() == buffer.length; waited++){
+            checkAborted();
+            if(waited < SPINS + YIELDS){
+                pause(waited);
+                continue;
+            }
+            waitingProducer = Thread.currentThread();
+            if(t - head.get() == buffer.length){
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            waitingProducer = null;
+        }
+        buffer[(int) t & mask] = item;
+        tail.lazySet(t + 1);
+        Thread consumer = waitingConsumer;
+        if(consumer != null){
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    // The next batch, or null once the producer has closed the queue
+    Object[][] take(){
+        return take(-1);
+    }
+
+    /*
+     * The next batch, or null once the producer has closed the queue, waiting at most nanos
+     * for one when nanos is not negative and handing back LINGERED if none came in time.
+     */
+    Object[][] take(long nanos){
+        long h = head.get();
+        long deadline = nanos < 0 ? 0 : System.nanoTime() + nanos;
+        for(int waited = 0; h == tail.get(); waited++){
+            checkAborted();
+            if(waited < SPINS + YIELDS){
+                pause(waited);
+                continue;
+            }
+            long park = PARK_NANOS;
+            if(nanos >= 0){
+                long left = deadline - System.nanoTime();
+                if(left <= 0){
+                    return LINGERED;
+                }
+                park = Math.min(park, left);
+            }
+            waitingConsumer = Thread.currentThread();
+            if(h == tail.get()){
+                LockSupport.parkNanos(this, park);
+            }
+            waitingConsumer = null;
+        }
+        return next(h);
+    }
+
+    // Whether a take now would have to wait
+    boolean isEmpty(){
+        return head.get() == tail.get();
+    }
+
+    private Object[][] next(long h){
+        int slot = (int) h & mask;
+        Object item = buffer[slot];
+        if(item == END){
+            return null;
+        }
+        buffer[slot] = null;
+        head.lazySet(h + 1);
+        Thread producer = waitingProducer;
+        if(producer != null){
+            LockSupport.unpark(producer);
+        }
+        return (Object[][]) item;
+    }
+
+    private void checkAborted(){
+        if(aborted){
+            throw new CancellationException("The pipe failed");
+        }
+    }
+
+    private static void pause(int waited){
+        if(waited < SPINS){
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+}
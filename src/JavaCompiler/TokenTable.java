@@ -0,0 +1,355 @@
+package JavaCompiler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import JavaCompiler.Core.Token;
+
+/*
+ * Tokens stored column-wise: one int kind and the source offsets each token covers. The
+ * kind packs the category with the index of the lexeme in the symbol table for every
+ * keyword, operator and structure token, so those lexemes are shared and never copied.
+ * Everything else is cut out of the source the first time somebody asks for it.
+ */
+class TokenTable {
+
+    static final int STRUCTURE = 0;
+    static final int KEYWORD = 1;
+    static final int PROTOTYPE = 2;
+    static final int NUMBER = 3;
+    static final int STRING = 4;
+    static final int ID = 5;
+    static final int OPERATOR = 6;
+
+    static final String[] categories = {"structure", "keyword", "prototype", "integer/rational", "string", "id", "operator"};
+
+    static final String[] symbols = {
+        null,
+        "\n", "{", "}", "(", ")", ",", ":", "#", "[", "]", "||", "<<", ">>",
+        "<==", "<++", "<--", "<**", "<//", "<%%", ">=", "==", "!=", "<=", "!", "-", "^", "*", "/", "%", "+", "<", ">", ".",
+        "-->", "--<(", "and", "or",
+        "continue", "break", "self", "none", "all", "FUNC", "while", "for", "if", "return", "true", "false", "OP", "Definitions", "Pipelines", "import", "PROTO", "ATR"
+    };
+
+    private static final HashMap<String, Integer> symbolCodes = new HashMap<String, Integer>();
+    private static final int[][] wordsByLength = new int[16][];
+    static {
+        for(int code = 1; code < symbols.length; code++){
+            symbolCodes.put(symbols[code], code);
+        }
+        for(int length = 0; length < wordsByLength.length; length++){
+            final int size = length;
+            wordsByLength[length] = symbolCodes.values().stream()
+                .filter(code -> Character.isLetter(symbols[code].charAt(0)) && symbols[code].length() == size)
+                .mapToInt(Integer::intValue).sorted().toArray();
+        }
+    }
+
+    static int symbol(String lexeme){
+        return symbolCodes.get(lexeme);
+    }
+
+    // Symbol code of the keyword, and or or spelled by source[start, end), 0 for any other word
+    static int word(CharSequence source, int start, int end){
+        int length = end - start;
+        if(length >= wordsByLength.length){
+            return 0;
+        }
+        for(int code : wordsByLength[length]){
+            String candidate = symbols[code];
+            int i = 0;
+            while(i < length && candidate.charAt(i) == source.charAt(start + i)){
+                i++;
+            }
+            if(i == length){
+                return code;
+            }
+        }
+        return 0;
+    }
+
+    static int kind(int category, int symbol){
+        return symbol << 3 | category;
+    }
+
+    /*
+     * The arrays double as a gap buffer, so an editor can replace a run of tokens in the
+     * middle without moving everything behind it. Tokens [0, gap) sit at the front of the
+     * arrays and the other size - gap at the very back, with offsets counted from the end of
+     * the source so that edits in front of them never have to touch them.
+     */
+    private CharSequence source;
+    private int sourceLength;
+    private LineIndex lines;
+    private int[] kinds = new int[1024];
+    private int[] starts = new int[1024];
+    private int[] ends = new int[1024];
+    private String[] lexemes;
+    private int size = 0;
+    private int gap = 0;
+    // How many tokens at the front and at the back no edit has touched since markUnchanged
+    private int unchangedPrefix = 0;
+    private int unchangedSuffix = 0;
+
+    /*
+     * A table over a whole source resolves lexemes and lines from it lazily. A table fed
+     * from a Reader has no source to go back to, so its producer hands over the lexemes it
+     * cannot rebuild and keeps the line index up to date itself.
+     */
+    TokenTable(CharSequence source){
+        this.source = source;
+        this.sourceLength = source.length();
+        this.lines = LineIndex.of(source);
+    }
+
+    TokenTable(LineIndex lines){
+        this.source = null;
+        this.lines = lines;
+    }
+
+    // Concatenates tables scanned from consecutive ranges of the same source
+    static TokenTable join(CharSequence source, List<TokenTable> parts){
+        TokenTable joined = new TokenTable(source);
+        joined.ensureCapacity(parts.stream().mapToInt(TokenTable::size).sum());
+        for(TokenTable part : parts){
+            part.moveGap(part.size);
+            System.arraycopy(part.kinds, 0, joined.kinds, joined.size, part.size);
+            System.arraycopy(part.starts, 0, joined.starts, joined.size, part.size);
+            System.arraycopy(part.ends, 0, joined.ends, joined.size, part.size);
+            joined.size += part.size;
+        }
+        joined.gap = joined.size;
+        return joined;
+    }
+
+    private void ensureCapacity(int capacity){
+        if(capacity > kinds.length){
+            int grown = Math.max(capacity, kinds.length * 2);
+            int tail = size - gap;
+            kinds = regrow(kinds, grown, tail);
+            starts = regrow(starts, grown, tail);
+            ends = regrow(ends, grown, tail);
+            if(lexemes != null){
+                String[] grownLexemes = new String[grown];
+                System.arraycopy(lexemes, 0, grownLexemes, 0, gap);
+                System.arraycopy(lexemes, lexemes.length - tail, grownLexemes, grown - tail, tail);
+                lexemes = grownLexemes;
+            }
+        }
+    }
+
+    private int[] regrow(int[] column, int grown, int tail){
+        int[] copy = new int[grown];
+        System.arraycopy(column, 0, copy, 0, gap);
+        System.arraycopy(column, column.length - tail, copy, grown - tail, tail);
+        return copy;
+    }
+
+    // Adds a token at the gap, which is the end of the table unless it is being edited
+    void add(int kind, int start, int end, String lexeme){
+        ensureCapacity(size + 1);
+        if(lexeme != null || lexemes != null){
+            lexemes()[gap] = lexeme;
+        }
+        kinds[gap] = kind;
+        starts[gap] = start;
+        ends[gap] = end;
+        gap++;
+        size++;
+    }
+
+    // Puts the gap in front of token index, costs one move per token it passes
+    void moveGap(int index){
+        int tail = kinds.length - size;
+        if(index < gap){
+            int count = gap - index;
+            move(index, index + tail, count, -sourceLength);
+        } else if(index > gap){
+            int count = index - gap;
+            move(gap + tail, gap, count, sourceLength);
+        }
+        gap = index;
+    }
+
+    private void move(int from, int to, int count, int shift){
+        System.arraycopy(kinds, from, kinds, to, count);
+        System.arraycopy(starts, from, starts, to, count);
+        System.arraycopy(ends, from, ends, to, count);
+        for(int i = to; i < to + count; i++){
+            starts[i] += shift;
+            ends[i] += shift;
+        }
+        if(lexemes != null){
+            System.arraycopy(lexemes, from, lexemes, to, count);
+        }
+    }
+
+    // Removes the token right behind the gap
+    void removeAfterGap(){
+        size--;
+    }
+
+    // Removes the token right in front of the gap
+    void removeBeforeGap(){
+        gap--;
+        size--;
+    }
+
+    /*
+     * Swaps in the source after an edit that replaced removed characters at offset with
+     * inserted ones; tokens behind the gap follow the end of the source along, and the line
+     * index is patched around the edit.
+     */
+    void retarget(CharSequence source, int offset, int removed, int inserted){
+        this.source = source;
+        this.sourceLength = source.length();
+        lines.edit(source, offset, removed, inserted);
+    }
+
+    // An incremental parse has seen every token as it is now
+    void markUnchanged(){
+        unchangedPrefix = size;
+        unchangedSuffix = size;
+    }
+
+    // An edit left only the first prefix and the last suffix tokens as they were
+    void changed(int prefix, int suffix){
+        unchangedPrefix = Math.min(unchangedPrefix, prefix);
+        unchangedSuffix = Math.min(unchangedSuffix, suffix);
+    }
+
+    int unchangedPrefix(){
+        return unchangedPrefix;
+    }
+
+    int unchangedSuffix(){
+        return unchangedSuffix;
+    }
+
+    // Drops the first count tokens once a streaming parser is done with them
+    void discard(int count){
+        moveGap(size);
+        System.arraycopy(kinds, count, kinds, 0, size - count);
+        System.arraycopy(starts, count, starts, 0, size - count);
+        System.arraycopy(ends, count, ends, 0, size - count);
+        if(lexemes != null){
+            System.arraycopy(lexemes, count, lexemes, 0, size - count);
+            Arrays.fill(lexemes, size - count, size, null);
+        }
+        size -= count;
+        gap = size;
+    }
+
+    int size(){
+        return size;
+    }
+
+    int gap(){
+        return gap;
+    }
+
+    CharSequence source(){
+        return source;
+    }
+
+    private int slot(int index){
+        return index < gap ? index : index + kinds.length - size;
+    }
+
+    int kind(int index){
+        return kinds[slot(index)];
+    }
+
+    int category(int index){
+        return kinds[slot(index)] & 7;
+    }
+
+    int symbol(int index){
+        return kinds[slot(index)] >>> 3;
+    }
+
+    String categoryName(int index){
+        return categories[kinds[slot(index)] & 7];
+    }
+
+    int start(int index){
+        return index < gap ? starts[index] : starts[slot(index)] + sourceLength;
+    }
+
+    int end(int index){
+        return index < gap ? ends[index] : ends[slot(index)] + sourceLength;
+    }
+
+    String lexeme(int index){
+        int slot = slot(index);
+        int symbol = kinds[slot] >>> 3;
+        if(symbol != 0){
+            return symbols[symbol];
+        }
+        String[] cache = lexemes();
+        if(cache[slot] == null){
+            cache[slot] = source.subSequence(start(index), end(index)).toString();
+        }
+        return cache[slot];
+    }
+
+    // Whether the token's category or lexeme is candidate, without materializing the lexeme
+    boolean is(int index, String candidate){
+        int slot = slot(index);
+        int symbol = kinds[slot] >>> 3;
+        if(symbol != 0){
+            return symbols[symbol].equals(candidate) || categories[kinds[slot] & 7].equals(candidate);
+        }
+        if(categories[kinds[slot] & 7].equals(candidate)){
+            return true;
+        }
+        if(lexemes != null && lexemes[slot] != null){
+            return lexemes[slot].equals(candidate);
+        }
+        int start = start(index);
+        int length = end(index) - start;
+        if(length != candidate.length()){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(source.charAt(start + i) != candidate.charAt(i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int line(int index){
+        return lines().line(start(index));
+    }
+
+    int column(int index){
+        return lines().column(start(index));
+    }
+
+    Token token(int index){
+        return new Token(categoryName(index), lexeme(index), start(index), lines());
+    }
+
+    private String[] lexemes(){
+        if(lexemes == null){
+            lexemes = new String[kinds.length];
+        }
+        return lexemes;
+    }
+
+    LineIndex lines(){
+        return lines;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder("[");
+        for(int i = 0; i < size; i++){
+            builder.append(i == 0 ? "" : ", ").append(lexeme(i));
+        }
+        return builder.append("]").toString();
+    }
+
+}